@@ -0,0 +1,230 @@
+package engine;
+
+import pieces.Geometry;
+import pieces.Logic;
+import pieces.Piece;
+
+/**
+ * Static exchange evaluation: the material outcome of a capture and the
+ * whole sequence of recaptures on its square, with each side always
+ * recapturing with its least valuable attacker and free to stop when
+ * going on would lose material.
+ *
+ * The exchange is played out on 64-bit square sets (bit {@code sq} =
+ * square {@code row * 8 + col}) rather than on the board: pieces that have
+ * captured are removed from an occupancy set, and attackers are looked up
+ * again through it, so a rook behind a rook or a bishop behind a queen
+ * ("x-rays") joins in. The board array is only read. Pins and checks are
+ * ignored, as usual for SEE.
+ */
+public final class Exchange {
+
+    /** Piece values in centipawns by kind, as in {@link Search}; the king outweighs any exchange. */
+    public static final int PAWN = 100, KNIGHT = 300, BISHOP = 300, ROOK = 500, QUEEN = 900, KING = 20_000;
+
+    /** Size of the gain buffer an exchange needs: one entry per capture, and there are 32 pieces. */
+    public static final int MAX_CAPTURES = 32;
+
+    private static final int[] PROMOTION_VALUES = { 0, KNIGHT, BISHOP, ROOK, QUEEN };
+
+    private Exchange() {
+    }
+
+    /**
+     * Evaluates a move, normally a capture, by static exchange.
+     *
+     * @param board the position before the move; not modified
+     * @param move  a legal move, {@code from | to << 6 | promotion << 12}
+     * @return material won (positive) or lost (negative) by the side making
+     *         the move once the exchange on the target square is over
+     */
+    public static int see(Piece[][] board, int move) {
+        return see(board, move, occupancy(board), pieces(board, true), new int[MAX_CAPTURES]);
+    }
+
+    /**
+     * Evaluates a move by static exchange without allocating, for callers
+     * that evaluate many moves of one position: the square sets are computed
+     * once per position and the gain buffer is reused.
+     *
+     * @param board    the position before the move; not modified
+     * @param move     a legal move, {@code from | to << 6 | promotion << 12}
+     * @param occupied {@link #occupancy} of {@code board}
+     * @param whites   {@link #pieces} of WHITE on {@code board}
+     * @param gain     scratch buffer of at least {@link #MAX_CAPTURES} entries
+     * @return as {@link #see(Piece[][], int)}
+     */
+    public static int see(Piece[][] board, int move, long occupied, long whites, int[] gain) {
+        int from = Logic.from(move), to = Logic.to(move);
+        Piece mover = at(board, from);
+        Piece target = at(board, to);
+        occupied &= ~(1L << from);
+
+        gain[0] = target == null ? 0 : value(target);
+        int onSquare = value(mover);
+        if (kind(mover) == 'P') {
+            if (target == null && ((from ^ to) & 7) != 0) {
+                // en passant: the captured pawn is beside the mover
+                occupied &= ~(1L << ((from & ~7) | (to & 7)));
+                gain[0] = PAWN;
+            }
+            int row = to >> 3;
+            if (row == 0 || row == 7) {
+                int promo = Logic.promotion(move) == Logic.PROMO_NONE ? Logic.PROMO_QUEEN : Logic.promotion(move);
+                gain[0] += PROMOTION_VALUES[promo] - PAWN;
+                onSquare = PROMOTION_VALUES[promo];
+            }
+        }
+
+        boolean white = !mover.isWhite(); // side to recapture
+        long attackers = attackers(board, to, occupied);
+        int d = 0;
+        while (true) {
+            int sq = leastValuable(board, attackers & (white ? whites : ~whites));
+            if (sq < 0) {
+                break;
+            }
+            d++;
+            // Speculative gain if the piece now on the square is taken
+            gain[d] = onSquare - gain[d - 1];
+            onSquare = value(at(board, sq));
+            occupied &= ~(1L << sq);
+            attackers = attackers & ~(1L << sq) | xray(board, to, sq, occupied);
+            white = !white;
+        }
+        // Each side picks the better of stopping or recapturing, from the end back
+        while (d > 0) {
+            gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+            d--;
+        }
+        return gain[0];
+    }
+
+    /**
+     * Finds every piece of either color that attacks {@code sq}, looking
+     * through the squares not in {@code occupied} as if they were empty.
+     * AND the result with {@link #pieces} to split it into attackers and
+     * defenders.
+     *
+     * @param board    pieces by [row][col]
+     * @param sq       target square
+     * @param occupied squares treated as occupied, e.g. {@link #occupancy}
+     * @return set of the attacking pieces' squares
+     */
+    public static long attackers(Piece[][] board, int sq, long occupied) {
+        long set = 0;
+        for (int dir = Geometry.N; dir <= Geometry.NW; dir++) {
+            int next = Geometry.neighbor(dir, sq);
+            for (int s = next; s >= 0; s = Geometry.neighbor(dir, s)) {
+                if ((occupied >>> s & 1) == 0) {
+                    continue;
+                }
+                Piece p = at(board, s);
+                char k = kind(p);
+                if (k == 'Q' || k == ((dir & 1) == 0 ? 'R' : 'B')) {
+                    set |= 1L << s;
+                } else if (s == next && (k == 'K' || k == 'P' && (p.isWhite()
+                        ? dir == Geometry.SE || dir == Geometry.SW
+                        : dir == Geometry.NE || dir == Geometry.NW))) {
+                    // a WHITE pawn attacks "up", so it sits below (S) the square
+                    set |= 1L << s;
+                }
+                break;
+            }
+        }
+        long jumps = Geometry.knightMask(sq) & occupied;
+        while (jumps != 0) {
+            int s = Long.numberOfTrailingZeros(jumps);
+            jumps &= jumps - 1;
+            if (kind(at(board, s)) == 'N') {
+                set |= 1L << s;
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Finds a slider uncovered behind {@code gone} on the line from
+     * {@code sq}, now that {@code gone} has left it.
+     *
+     * @return the slider's square as a set, or 0
+     */
+    private static long xray(Piece[][] board, int sq, int gone, long occupied) {
+        int dir = Geometry.direction(sq, gone);
+        if (dir < 0) {
+            return 0; // a knight leaves no line behind
+        }
+        for (int s = Geometry.neighbor(dir, gone); s >= 0; s = Geometry.neighbor(dir, s)) {
+            if ((occupied >>> s & 1) != 0) {
+                char k = kind(at(board, s));
+                return k == 'Q' || k == ((dir & 1) == 0 ? 'R' : 'B') ? 1L << s : 0;
+            }
+        }
+        return 0;
+    }
+
+    /** @return the set of occupied squares */
+    public static long occupancy(Piece[][] board) {
+        long set = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (at(board, sq) != null) {
+                set |= 1L << sq;
+            }
+        }
+        return set;
+    }
+
+    /** @return the set of squares holding pieces of one color */
+    public static long pieces(Piece[][] board, boolean white) {
+        long set = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            Piece p = at(board, sq);
+            if (p != null && p.isWhite() == white) {
+                set |= 1L << sq;
+            }
+        }
+        return set;
+    }
+
+    /** @return the exchange value of a piece in centipawns */
+    public static int value(Piece p) {
+        switch (kind(p)) {
+            case 'P':
+                return PAWN;
+            case 'N':
+                return KNIGHT;
+            case 'B':
+                return BISHOP;
+            case 'R':
+                return ROOK;
+            case 'Q':
+                return QUEEN;
+            default:
+                return KING;
+        }
+    }
+
+    /** @return the square of the cheapest piece in {@code set}, or -1 if empty */
+    private static int leastValuable(Piece[][] board, long set) {
+        int best = -1;
+        int bestValue = Integer.MAX_VALUE;
+        while (set != 0) {
+            int sq = Long.numberOfTrailingZeros(set);
+            set &= set - 1;
+            int v = value(at(board, sq));
+            if (v < bestValue) {
+                best = sq;
+                bestValue = v;
+            }
+        }
+        return best;
+    }
+
+    private static Piece at(Piece[][] board, int sq) {
+        return board[sq >> 3][sq & 7];
+    }
+
+    private static char kind(Piece p) {
+        return Character.toUpperCase(p.symbol());
+    }
+}
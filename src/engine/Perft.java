@@ -0,0 +1,143 @@
+package engine;
+
+import main.ChessGame;
+import pieces.Logic;
+import pieces.MoveUndo;
+import pieces.Piece;
+
+/**
+ * Move-generation correctness check and rules-engine benchmark.
+ *
+ * Counts the leaf nodes of the legal move tree ("perft") for standard test
+ * positions that exercise castling, en passant and promotion, compares
+ * them with the published counts, and reports nodes per second. It then
+ * times {@link Logic#isLegal} and {@link Logic#isCheckmated} on the
+ * starting position and prints their cost per call. Static exchange
+ * evaluation is checked against hand-counted exchanges as well. The timings are for
+ * comparing builds on one machine; no limit is checked.
+ *
+ * Usage: {@code java -cp bin engine.Perft [maxDepth=4]}
+ */
+public class Perft {
+
+    private static final String[] FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - -",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq -",
+    };
+    private static final long[][] EXPECTED = {
+            { 20, 400, 8902, 197281, 4865609 },
+            { 48, 2039, 97862, 4085603 },
+            { 14, 191, 2812, 43238, 674624 },
+            { 6, 264, 9467, 422333 },
+    };
+
+    // Position, move (from, to) and its static exchange value
+    private static final String[] SEE_FENS = {
+            "4k3/8/8/3n4/4P3/8/8/4K3 w - -",
+            "4k3/8/2p5/3n4/4P3/8/8/4K3 w - -",
+            "4k3/8/2p5/3p4/4Q3/8/8/4K3 w - -",
+            "1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - -",
+    };
+    private static final int[][] SEE_EXPECTED = {
+            { 36, 27, 300 }, // exd5, knight undefended
+            { 36, 27, 200 }, // exd5 cxd5: knight for pawn
+            { 36, 27, -800 }, // Qxd5 cxd5: queen for pawn
+            { 60, 28, 100 }, // Rxe5, the pawn's defender is not on the e-file
+    };
+
+    private final Piece[][] board;
+    private final int[][] moveStack = new int[16][Logic.MAX_MOVES];
+    private final MoveUndo[] undoStack = new MoveUndo[16];
+
+    private Perft(Piece[][] board) {
+        this.board = board;
+        for (int i = 0; i < undoStack.length; i++) {
+            undoStack[i] = new MoveUndo();
+        }
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        boolean ok = true;
+        for (int i = 0; i < FENS.length; i++) {
+            ChessGame game = new ChessGame();
+            game.loadFen(FENS[i]);
+            Perft perft = new Perft(game.getBoard());
+            for (int depth = 1; depth <= Math.min(maxDepth, EXPECTED[i].length); depth++) {
+                long start = System.nanoTime();
+                long nodes = perft.count(depth, 0, game.isWhiteToMove(), game.getCastlingRights(),
+                        game.getEpSquare());
+                double secs = (System.nanoTime() - start) / 1e9;
+                boolean match = nodes == EXPECTED[i][depth - 1];
+                ok &= match;
+                System.out.printf("pos %d depth %d: %10d %s  %8.0f knodes/s%n", i + 1, depth, nodes,
+                        match ? "ok" : "MISMATCH (expected " + EXPECTED[i][depth - 1] + ")",
+                        nodes / Math.max(secs, 1e-9) / 1000);
+            }
+        }
+        ok &= checkExchanges();
+        benchmark();
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private long count(int depth, int ply, boolean white, int castling, int ep) {
+        int[] moves = moveStack[ply];
+        int n = Logic.legalMoves(board, white ? "WHITE" : "BLACK", castling, ep, moves);
+        if (depth == 1) {
+            return n;
+        }
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            MoveUndo undo = undoStack[ply];
+            int nextEp = Logic.makeMove(board, moves[i], undo);
+            total += count(depth - 1, ply + 1, !white, Logic.castlingAfter(castling, moves[i]), nextEp);
+            Logic.unmakeMove(board, undo);
+        }
+        return total;
+    }
+
+    /** Compares {@link Exchange#see} with the expected values. */
+    private static boolean checkExchanges() {
+        boolean ok = true;
+        for (int i = 0; i < SEE_FENS.length; i++) {
+            ChessGame game = new ChessGame();
+            game.loadFen(SEE_FENS[i]);
+            int[] e = SEE_EXPECTED[i];
+            int value = Exchange.see(game.getBoard(), Logic.move(e[0], e[1], Logic.PROMO_NONE));
+            ok &= value == e[2];
+            System.out.printf("see %d: %10d %s%n", i + 1, value,
+                    value == e[2] ? "ok" : "MISMATCH (expected " + e[2] + ")");
+        }
+        return ok;
+    }
+
+    /** Times the two calls the play states make on every move. */
+    private static void benchmark() {
+        ChessGame game = new ChessGame();
+        game.resetPosition();
+        Piece[][] board = game.getBoard();
+        int e2e4 = Logic.move(52, 36, Logic.PROMO_NONE);
+        int iterations = 2_000_000;
+        boolean sink = false;
+        for (int round = 0; round < 2; round++) { // first round warms up the JIT
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink ^= Logic.isLegal(board, e2e4, Logic.ALL_CASTLING, Logic.NO_EN_PASSANT, "WHITE");
+            }
+            long legalNs = (System.nanoTime() - start) / iterations;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations / 10; i++) {
+                sink ^= Logic.isCheckmated(board, "WHITE");
+            }
+            long mateNs = (System.nanoTime() - start) / (iterations / 10);
+            if (round == 1) {
+                System.out.printf("isLegal: %d ns/call, isCheckmated: %d ns/call%s%n", legalNs, mateNs,
+                        sink ? "" : " ");
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import pieces.Logic;
+import pieces.MoveUndo;
+import pieces.Piece;
+
+/**
+ * Fixed-depth alpha-beta (negamax) search over a {@code Piece[][]} board.
+ *
+ * A Search instance owns its per-ply move buffers and is reused for every
+ * move it is asked for, so a worker thread allocates nothing per node. It
+ * plays on the caller's board array with make/unmake and leaves it
+ * unchanged; instances are not thread-safe, except for {@link #cancel()}.
+ *
+ * {@link #bestMove} searches to a fixed depth, for engine play.
+ * {@link #analyze} deepens iteratively within {@link Limits} and reports
+ * the best lines after every depth, for analysis.
+ */
+public class Search {
+
+    /** Score of being checkmated at the root; mate in n plies is MATE - n. */
+    public static final int MATE = 100_000;
+    private static final int MAX_PLY = 64;
+
+    /**
+     * Engine settings compared in a tournament.
+     *
+     * @param name        label used in reports
+     * @param depth       search depth in plies
+     * @param pawnAdvance centipawns per rank a pawn has advanced
+     */
+    public record Settings(String name, int depth, int pawnAdvance) {
+    }
+
+    /**
+     * How far {@link #analyze} may go.
+     *
+     * @param maxDepth  deepest iteration, in plies
+     * @param multiPv   number of best root moves to report a line for
+     * @param maxMillis time budget in milliseconds, or 0 for none
+     */
+    public record Limits(int maxDepth, int multiPv, long maxMillis) {
+    }
+
+    /**
+     * A principal variation.
+     *
+     * @param score centipawns from the root side's point of view; mate in n
+     *              plies is {@code MATE - n}
+     * @param moves the line, first move first
+     */
+    public record Line(int score, int[] moves) {
+    }
+
+    /**
+     * Progress of an analysis after a completed iteration.
+     *
+     * @param depth          depth of the iteration
+     * @param lines          best lines, best first
+     * @param nodes          nodes visited by the analysis so far
+     * @param nodesPerSecond search speed so far
+     * @param millis         time spent so far
+     */
+    public record Info(int depth, List<Line> lines, long nodes, long nodesPerSecond, long millis) {
+    }
+
+    private final Settings settings;
+    private final int[][] moveStack = new int[MAX_PLY][Logic.MAX_MOVES];
+    private final int[] orderKeys = new int[Logic.MAX_MOVES];
+    private final int[] exchangeGain = new int[Exchange.MAX_CAPTURES];
+    private final MoveUndo[] undoStack = new MoveUndo[MAX_PLY];
+    // Triangular principal-variation table: pv[ply] is the line from ply on
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private Piece[][] board;
+    private long nodes;
+    // Stopping an analysis: set from any thread, polled every 1024 nodes
+    private volatile boolean cancelled;
+    private boolean limited;
+    private long deadline;
+    private boolean aborted;
+
+    /**
+     * @param settings engine settings
+     */
+    public Search(Settings settings) {
+        this.settings = settings;
+        for (int i = 0; i < MAX_PLY; i++) {
+            undoStack[i] = new MoveUndo();
+        }
+    }
+
+    /** @return the settings this search plays with */
+    public Settings settings() {
+        return settings;
+    }
+
+    /** @return nodes visited since construction */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Asks a running or future {@link #analyze} call of this instance to
+     * stop. It returns within about a thousand nodes with the last completed
+     * iteration. Cancellation is permanent; use a new instance for a new
+     * analysis.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Analyzes a position by iterative deepening. After each completed
+     * depth the best {@code limits.multiPv()} root moves are passed to
+     * {@code progress} with their principal variations. Moves are searched
+     * best-first from the previous depth; a root move only needs an exact
+     * score if it can still make the top lines, so the others are searched
+     * with a window that lets them fail low quickly.
+     *
+     * The board is played on and restored, so a caller analyzing in the
+     * background must pass a private copy.
+     *
+     * @param board    the position; unchanged on return
+     * @param white    {@code true} if WHITE is to move
+     * @param castling castling rights mask
+     * @param ep       en-passant target square, or {@code Logic.NO_EN_PASSANT}
+     * @param limits   depth, line count and time budget
+     * @param progress receives each completed iteration, on this thread
+     * @return the last completed iteration, or {@code null} if cancelled
+     *         before depth 1 finished or there is no legal move
+     */
+    public Info analyze(Piece[][] board, boolean white, int castling, int ep, Limits limits,
+            Consumer<Info> progress) {
+        long start = System.nanoTime();
+        long startNodes = nodes;
+        this.board = board;
+        limited = true;
+        aborted = false;
+        deadline = start + (limits.maxMillis() > 0 ? limits.maxMillis() * 1_000_000 : Long.MAX_VALUE / 2);
+
+        int[] moves = moveStack[0];
+        int count = Logic.legalMoves(board, color(white), castling, ep, moves);
+        orderMoves(moves, count);
+        int[] scores = new int[count];
+        int[][] lines = new int[count][];
+        int wanted = Math.min(Math.max(limits.multiPv(), 1), count);
+        Info last = null;
+
+        for (int depth = 1; depth <= Math.min(limits.maxDepth(), MAX_PLY - 1) && count > 0; depth++) {
+            for (int i = 0; i < count; i++) {
+                // Beyond the first 'wanted' moves, only beating the current last line matters
+                int alpha = i < wanted ? -MATE - 1 : nthBest(scores, i, wanted);
+                int score = -searchMove(moves[i], castling, depth - 1, 0, !white, -MATE - 1, -alpha);
+                if (aborted) {
+                    break;
+                }
+                scores[i] = score;
+                lines[i] = score > alpha ? line(moves[i]) : null;
+            }
+            if (aborted) {
+                break;
+            }
+            sortRoot(moves, scores, lines, count);
+
+            List<Line> best = new ArrayList<>(wanted);
+            for (int i = 0; i < wanted; i++) {
+                best.add(new Line(scores[i], lines[i] != null ? lines[i] : new int[] { moves[i] }));
+            }
+            long elapsed = System.nanoTime() - start;
+            long searched = nodes - startNodes;
+            last = new Info(depth, List.copyOf(best), searched, searched * 1_000_000_000L / Math.max(elapsed, 1),
+                    elapsed / 1_000_000);
+            progress.accept(last);
+            if (Math.abs(scores[0]) >= MATE - MAX_PLY) {
+                break; // a forced mate needs no deeper search
+            }
+        }
+        limited = false;
+        this.board = null;
+        return last;
+    }
+
+    /** The root move followed by the line found below it. */
+    private int[] line(int move) {
+        int[] line = new int[1 + pvLength[1]];
+        line[0] = move;
+        System.arraycopy(pv[1], 0, line, 1, pvLength[1]);
+        return line;
+    }
+
+    /** The {@code n}-th highest of the first {@code count} scores. */
+    private static int nthBest(int[] scores, int count, int n) {
+        int[] top = new int[n];
+        Arrays.fill(top, Integer.MIN_VALUE);
+        for (int i = 0; i < count; i++) {
+            int s = scores[i];
+            for (int j = 0; j < n; j++) {
+                if (s > top[j]) {
+                    int t = top[j];
+                    top[j] = s;
+                    s = t;
+                }
+            }
+        }
+        return top[n - 1];
+    }
+
+    /** Stable sort of the root moves by score, best first. */
+    private static void sortRoot(int[] moves, int[] scores, int[][] lines, int count) {
+        for (int i = 1; i < count; i++) {
+            int move = moves[i], score = scores[i];
+            int[] line = lines[i];
+            int j = i;
+            while (j > 0 && scores[j - 1] < score) {
+                moves[j] = moves[j - 1];
+                scores[j] = scores[j - 1];
+                lines[j] = lines[j - 1];
+                j--;
+            }
+            moves[j] = move;
+            scores[j] = score;
+            lines[j] = line;
+        }
+    }
+
+    /**
+     * Finds the best move for the side to move.
+     *
+     * @param board    the position; unchanged on return
+     * @param white    {@code true} if WHITE is to move
+     * @param castling castling rights mask
+     * @param ep       en-passant target square, or {@code Logic.NO_EN_PASSANT}
+     * @return the move as {@code from | to << 6 | promotion << 12}, or -1 if
+     *         there is no legal move
+     */
+    public int bestMove(Piece[][] board, boolean white, int castling, int ep) {
+        this.board = board;
+        int[] moves = moveStack[0];
+        int count = Logic.legalMoves(board, color(white), castling, ep, moves);
+        orderMoves(moves, count);
+
+        int best = -1;
+        int alpha = -MATE - 1;
+        for (int i = 0; i < count; i++) {
+            int score = -searchMove(moves[i], castling, settings.depth() - 1, 0, !white, -MATE - 1, -alpha);
+            if (score > alpha) {
+                alpha = score;
+                best = moves[i];
+            }
+        }
+        this.board = null;
+        return best;
+    }
+
+    private int negamax(int castling, int ep, int depth, int ply, boolean white, int alpha, int beta) {
+        pvLength[ply] = 0;
+        if ((++nodes & 1023) == 0 && limited && (cancelled || System.nanoTime() - deadline > 0)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0; // unwinding; the caller discards this iteration
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return evaluate(white);
+        }
+        int[] moves = moveStack[ply];
+        int count = Logic.legalMoves(board, color(white), castling, ep, moves);
+        if (count == 0) {
+            // Checkmate, or stalemate (a draw)
+            return Logic.isInCheck(board, color(white)) ? -MATE + ply : 0;
+        }
+        orderMoves(moves, count);
+        for (int i = 0; i < count; i++) {
+            int score = -searchMove(moves[i], castling, depth - 1, ply, !white, -beta, -alpha);
+            if (score >= beta) {
+                return score;
+            }
+            if (score > alpha) {
+                alpha = score;
+                pv[ply][0] = moves[i];
+                System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+                pvLength[ply] = pvLength[ply + 1] + 1;
+            }
+        }
+        return alpha;
+    }
+
+    /**
+     * Makes a move at {@code ply}, searches the resulting position one ply
+     * deeper and unmakes it.
+     */
+    private int searchMove(int move, int castling, int depth, int ply, boolean white, int alpha, int beta) {
+        MoveUndo undo = undoStack[ply];
+        int ep = Logic.makeMove(board, move, undo);
+        int score = negamax(Logic.castlingAfter(castling, move), ep, depth, ply + 1, white, alpha, beta);
+        Logic.unmakeMove(board, undo);
+        return score;
+    }
+
+    /** Material plus pawn advancement, from the point of view of the side to move. */
+    private int evaluate(boolean white) {
+        int score = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            Piece p = board[sq >> 3][sq & 7];
+            if (p == null) {
+                continue;
+            }
+            int value;
+            switch (Character.toUpperCase(p.symbol())) {
+                case 'P':
+                    value = 100 + settings.pawnAdvance() * (p.isWhite() ? 6 - (sq >> 3) : (sq >> 3) - 1);
+                    break;
+                case 'N':
+                case 'B':
+                    value = 300;
+                    break;
+                case 'R':
+                    value = 500;
+                    break;
+                case 'Q':
+                    value = 900;
+                    break;
+                default:
+                    value = 0;
+                    break;
+            }
+            score += p.isWhite() ? value : -value;
+        }
+        return white ? score : -score;
+    }
+
+    /**
+     * Orders moves so alpha-beta cuts earlier: captures and promotions that
+     * win or hold material by static exchange first (best first), then
+     * quiet moves, then captures that lose material. The sort is stable, so
+     * quiet moves keep their generation order.
+     */
+    private void orderMoves(int[] moves, int count) {
+        long occupied = 0, whites = 0; // filled for the first tactical move
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int to = Logic.to(move);
+            boolean tactical = board[to >> 3][to & 7] != null || Logic.promotion(move) != Logic.PROMO_NONE;
+            if (tactical && occupied == 0) {
+                occupied = Exchange.occupancy(board);
+                whites = Exchange.pieces(board, true);
+            }
+            int key = tactical ? Exchange.see(board, move, occupied, whites, exchangeGain) : -1;
+            // insertion sort, descending by key; move lists are short
+            int j = i;
+            while (j > 0 && orderKeys[j - 1] < key) {
+                orderKeys[j] = orderKeys[j - 1];
+                moves[j] = moves[j - 1];
+                j--;
+            }
+            orderKeys[j] = key;
+            moves[j] = move;
+        }
+    }
+
+    private static String color(boolean white) {
+        return white ? "WHITE" : "BLACK";
+    }
+}
@@ -0,0 +1,290 @@
+package engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import main.ChessGame;
+import pieces.Logic;
+import pieces.Piece;
+
+/**
+ * Self-play tournament between two engine {@link Search.Settings}.
+ *
+ * Games are scheduled across a fixed thread pool with one worker per core.
+ * Each worker keeps its own {@link ChessGame}, one {@link Search} per side
+ * and its move buffers for the whole run, and pulls game numbers from a
+ * shared counter until the schedule is done or the SPRT test stops it.
+ *
+ * Openings are randomized: each pair of games starts with the same
+ * {@code openingPlies} random legal moves, once with each engine as WHITE.
+ * Games are adjudicated as a win on checkmate ({@link Logic#isCheckmated}),
+ * and as a draw on stalemate, threefold repetition, the fifty-move rule
+ * (all as detected by {@link ChessGame}) or when {@code maxPlies} is reached.
+ *
+ * Usage:
+ * {@code java -cp bin engine.Tournament [games=200] [threads=<cores>] [depthA=3] [depthB=2]
+ * [openingPlies=4] [maxPlies=200] [seed=1] [elo0=0] [elo1=10]}
+ */
+public class Tournament {
+
+    // Pseudo-games of each result (win, draw, loss) added for the error and
+    // the LLR: without them a one-sided run, e.g. all wins, has zero variance
+    // and both statistics stay stuck however many games are played
+    private static final double PRIOR = 0.5;
+
+    private final Search.Settings a;
+    private final Search.Settings b;
+    private final int games;
+    private final int threads;
+    private final int openingPlies;
+    private final int maxPlies;
+    private final long seed;
+    private final double elo0;
+    private final double elo1;
+
+    // Results from engine A's point of view
+    private final AtomicInteger winsA = new AtomicInteger();
+    private final AtomicInteger draws = new AtomicInteger();
+    private final AtomicInteger winsB = new AtomicInteger();
+    private final AtomicInteger mates = new AtomicInteger();
+    private final AtomicInteger stalemates = new AtomicInteger();
+    private final AtomicInteger repetitions = new AtomicInteger();
+    private final AtomicInteger fiftyMoves = new AtomicInteger();
+    private final AtomicInteger moveLimits = new AtomicInteger();
+    private final AtomicLong totalPlies = new AtomicLong();
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private volatile boolean stopped;
+
+    public Tournament(Search.Settings a, Search.Settings b, int games, int threads, int openingPlies, int maxPlies,
+            long seed, double elo0, double elo1) {
+        this.a = a;
+        this.b = b;
+        this.games = games;
+        this.threads = threads;
+        this.openingPlies = openingPlies;
+        this.maxPlies = maxPlies;
+        this.seed = seed;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> opt = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                opt.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        Tournament t = new Tournament(
+                new Search.Settings("A", Integer.parseInt(opt.getOrDefault("depthA", "3")), 5),
+                new Search.Settings("B", Integer.parseInt(opt.getOrDefault("depthB", "2")), 5),
+                Integer.parseInt(opt.getOrDefault("games", "200")),
+                Integer.parseInt(opt.getOrDefault("threads", String.valueOf(cores))),
+                Integer.parseInt(opt.getOrDefault("openingPlies", "4")),
+                Integer.parseInt(opt.getOrDefault("maxPlies", "200")),
+                Long.parseLong(opt.getOrDefault("seed", "1")),
+                Double.parseDouble(opt.getOrDefault("elo0", "0")),
+                Double.parseDouble(opt.getOrDefault("elo1", "10")));
+
+        long start = System.nanoTime();
+        t.run();
+        double minutes = (System.nanoTime() - start) / 60e9;
+        System.out.print(t.report(minutes));
+    }
+
+    /** Plays the whole schedule and blocks until every worker has finished. */
+    public void run() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            pool.execute(new Worker());
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+    /** One thread's reusable game, searches and buffers. */
+    private final class Worker implements Runnable {
+        private final ChessGame game = new ChessGame();
+        private final Search searchA = new Search(a);
+        private final Search searchB = new Search(b);
+        private final int[] moves = new int[Logic.MAX_MOVES];
+
+        @Override
+        public void run() {
+            int n;
+            while (!stopped && (n = nextGame.getAndIncrement()) < games) {
+                // Games 2k and 2k+1 share an opening, with colors swapped
+                boolean aIsWhite = (n & 1) == 0;
+                int result = play(new Random(seed * 31 + (n >> 1)), aIsWhite);
+                record(aIsWhite ? result : -result);
+            }
+        }
+
+        /** @return +1 if WHITE won, -1 if BLACK won, 0 for a draw */
+        private int play(Random opening, boolean aIsWhite) {
+            game.resetPosition();
+            int plies = 0;
+            while (true) {
+                Piece[][] board = game.getBoard();
+                boolean white = game.isWhiteToMove();
+                String color = white ? "WHITE" : "BLACK";
+
+                int count = Logic.legalMoves(board, color, game.getCastlingRights(), game.getEpSquare(), moves);
+                if (count == 0) {
+                    if (Logic.isCheckmated(board, color, game.getEpSquare())) {
+                        mates.incrementAndGet();
+                        return finish(plies, white ? -1 : 1);
+                    }
+                    stalemates.incrementAndGet();
+                    return finish(plies, 0);
+                }
+                if (game.repetitionCount() >= 3) {
+                    repetitions.incrementAndGet();
+                    return finish(plies, 0);
+                }
+                if (game.getHalfmoveClock() >= 100) {
+                    fiftyMoves.incrementAndGet();
+                    return finish(plies, 0);
+                }
+                if (plies >= maxPlies) {
+                    moveLimits.incrementAndGet();
+                    return finish(plies, 0);
+                }
+
+                int move;
+                if (plies < openingPlies) {
+                    move = moves[opening.nextInt(count)];
+                } else {
+                    move = (white == aIsWhite ? searchA : searchB).bestMove(board, white,
+                            game.getCastlingRights(), game.getEpSquare());
+                }
+                game.tryMove(Logic.from(move), Logic.to(move), Logic.promotion(move));
+                game.toggleTurn();
+                plies++;
+            }
+        }
+
+        private int finish(int plies, int result) {
+            totalPlies.addAndGet(plies);
+            return result;
+        }
+    }
+
+    private void record(int resultForA) {
+        if (resultForA > 0) {
+            winsA.incrementAndGet();
+        } else if (resultForA < 0) {
+            winsB.incrementAndGet();
+        } else {
+            draws.incrementAndGet();
+        }
+        double llr = llr();
+        if (llr >= upperBound() || llr <= lowerBound()) {
+            stopped = true;
+        }
+    }
+
+    // -- Statistics --
+
+    /** @return engine A's score fraction (wins + draws / 2) / games */
+    public double score() {
+        int n = winsA.get() + draws.get() + winsB.get();
+        return n == 0 ? 0.5 : (winsA.get() + draws.get() / 2.0) / n;
+    }
+
+    /** @return Elo difference of A over B implied by the score */
+    public double eloDiff() {
+        return scoreToElo(score());
+    }
+
+    /** @return 95% confidence half-width of {@link #eloDiff()} */
+    public double eloError() {
+        if (winsA.get() + draws.get() + winsB.get() == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double n = regularizedGames();
+        double s = regularizedScore();
+        double sd = Math.sqrt(variance(s) / n);
+        return (scoreToElo(Math.min(s + 1.96 * sd, 0.9999)) - scoreToElo(Math.max(s - 1.96 * sd, 0.0001))) / 2;
+    }
+
+    /**
+     * Log-likelihood ratio of H1 (elo = elo1) against H0 (elo = elo0), using
+     * the normal approximation of the trinomial (win/draw/loss) GSPRT.
+     */
+    public double llr() {
+        if (winsA.get() + draws.get() + winsB.get() == 0) {
+            return 0;
+        }
+        double n = regularizedGames();
+        double s = regularizedScore();
+        double var = variance(s);
+        double s0 = eloToScore(elo0), s1 = eloToScore(elo1);
+        return n * (s1 - s0) * (2 * s - s0 - s1) / (2 * var);
+    }
+
+    /** SPRT bounds for alpha = beta = 0.05. */
+    private static double lowerBound() {
+        return Math.log(0.05 / 0.95);
+    }
+
+    private static double upperBound() {
+        return Math.log(0.95 / 0.05);
+    }
+
+    private double regularizedGames() {
+        return winsA.get() + draws.get() + winsB.get() + 3 * PRIOR;
+    }
+
+    /** @return A's score over the played games and the pseudo-games */
+    private double regularizedScore() {
+        return (winsA.get() + PRIOR + (draws.get() + PRIOR) / 2) / regularizedGames();
+    }
+
+    /** Per-game variance of the score, from the regularized W/D/L frequencies. */
+    private double variance(double s) {
+        double n = regularizedGames();
+        double w = (winsA.get() + PRIOR) / n, d = (draws.get() + PRIOR) / n;
+        return w + d / 4 - s * s;
+    }
+
+    private static double scoreToElo(double s) {
+        s = Math.min(Math.max(s, 0.0001), 0.9999);
+        return -400 * Math.log10(1 / s - 1);
+    }
+
+    private static double eloToScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * @param minutes wall-clock duration of the run
+     * @return the results as text
+     */
+    public String report(double minutes) {
+        int n = winsA.get() + draws.get() + winsB.get();
+        double llr = llr();
+        String sprt = llr >= upperBound() ? "H1 accepted" : llr <= lowerBound() ? "H0 accepted" : "inconclusive";
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s (depth %d) vs %s (depth %d), %d threads%n", a.name(), a.depth(), b.name(),
+                b.depth(), threads));
+        sb.append(String.format("Games: %d  +%d =%d -%d  score %.1f%%%n", n, winsA.get(), draws.get(), winsB.get(),
+                100 * score()));
+        sb.append(String.format("Elo: %+.1f +/- %.1f%n", eloDiff(), eloError()));
+        sb.append(String.format("SPRT [%.1f, %.1f]: LLR %.2f (%.2f, %.2f) %s%n", elo0, elo1, llr, lowerBound(),
+                upperBound(), sprt));
+        sb.append(String.format("Endings: mate %d, stalemate %d, repetition %d, fifty-move %d, move limit %d%n",
+                mates.get(), stalemates.get(), repetitions.get(), fiftyMoves.get(), moveLimits.get()));
+        sb.append(String.format("Throughput: %.1f games/min, %.1f plies/game%n", n / Math.max(minutes, 1e-9),
+                n == 0 ? 0.0 : (double) totalPlies.get() / n));
+        return sb.toString();
+    }
+}
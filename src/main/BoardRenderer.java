@@ -0,0 +1,206 @@
+package main;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import pieces.Logic;
+import pieces.Position;
+import states.Command;
+
+/**
+ * Renders positions as text for the {@code show} command: the ASCII board
+ * of {@link ChessGame#printBoard()}, the same board with Unicode chess
+ * symbols, or a FEN string.
+ *
+ * Each render is built in one pass into a reusable byte buffer, already
+ * encoded (UTF-8), and written with a single {@link PrintStream#write} call
+ * instead of one print per square. The last render of each format is
+ * kept along with the position key it was made for, so showing an
+ * unchanged position again only repeats the write.
+ *
+ * Works from immutable {@link Position} snapshots, so any thread can render
+ * with its own instance; an instance itself is not thread-safe.
+ */
+public final class BoardRenderer {
+
+	/** Output formats of the {@code show} command. */
+	public enum Format {
+		ASCII, UNICODE, FEN
+	}
+
+	private static final byte[] RULE = ascii("-------------------------\n");
+	private static final byte[] FILES = ascii("  A B C D E F G H\n");
+	private static final byte[] NOT_STARTED = ascii("Board not yet initialized. Use 'reset' to start a game.\n");
+	private static final String SYMBOLS = "KQRBNPkqrbnp";
+	// UTF-8 bytes of the Unicode glyph of each symbol in SYMBOLS, and of an empty square
+	private static final byte[][] GLYPHS = new byte[SYMBOLS.length()][];
+	private static final byte[] EMPTY_GLYPH = "\u00b7".getBytes(StandardCharsets.UTF_8);
+
+	static {
+		String glyphs = "\u2654\u2655\u2656\u2657\u2658\u2659\u265a\u265b\u265c\u265d\u265e\u265f";
+		for (int i = 0; i < GLYPHS.length; i++) {
+			GLYPHS[i] = String.valueOf(glyphs.charAt(i)).getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	// Per format: the rendered bytes, their length, and what they were rendered from
+	private final byte[][] buffers = new byte[Format.values().length][512];
+	private final int[] lengths = new int[Format.values().length];
+	private final long[] keys = new long[Format.values().length];
+	private final int[] extras = new int[Format.values().length];
+	private final boolean[] valid = new boolean[Format.values().length];
+
+	private byte[] buf;
+	private int len;
+
+	/**
+	 * Renders a position and writes it with one call.
+	 *
+	 * @param position the position, or {@code null} if no game was started
+	 * @param format   output format
+	 * @param fullmove move number shown in FEN output
+	 * @param out      destination
+	 */
+	public void print(Position position, Format format, int fullmove, PrintStream out) {
+		int f = render(position, format, fullmove);
+		out.write(buffers[f], 0, lengths[f]);
+		out.flush();
+	}
+
+	/**
+	 * Renders a position to a string, e.g. for logs or tests.
+	 *
+	 * @return the rendered text, ending with a newline
+	 */
+	public String toString(Position position, Format format, int fullmove) {
+		int f = render(position, format, fullmove);
+		return new String(buffers[f], 0, lengths[f], StandardCharsets.UTF_8);
+	}
+
+	/** @return the format's index, with its buffer holding the render */
+	private int render(Position position, Format format, int fullmove) {
+		int f = format.ordinal();
+		long key = position == null ? 0 : position.key();
+		// FEN also shows the clocks, which the key leaves out
+		int extra = position == null || format != Format.FEN ? 0 : fullmove << 16 | position.halfmoveClock();
+		if (valid[f] && keys[f] == key && extras[f] == extra) {
+			return f;
+		}
+
+		buf = buffers[f];
+		len = 0;
+		if (format == Format.FEN) {
+			if (position == null) {
+				put(NOT_STARTED);
+			} else {
+				fen(position, fullmove);
+			}
+		} else {
+			board(position, format == Format.UNICODE);
+		}
+		buffers[f] = buf;
+		lengths[f] = len;
+		keys[f] = key;
+		extras[f] = extra;
+		valid[f] = true;
+		return f;
+	}
+
+	/** The board between rules and file letters, as printBoard has always drawn it. */
+	private void board(Position position, boolean unicode) {
+		put(RULE);
+		put(FILES);
+		if (position == null) {
+			put(NOT_STARTED);
+		} else {
+			for (int r = 0; r < 8; r++) {
+				put((byte) ('8' - r));
+				put((byte) ' ');
+				for (int c = 0; c < 8; c++) {
+					char symbol = position.pieceAt(r * 8 + c);
+					if (!unicode) {
+						put((byte) symbol);
+					} else {
+						put(symbol == '.' ? EMPTY_GLYPH : GLYPHS[SYMBOLS.indexOf(symbol)]);
+					}
+					put((byte) ' ');
+				}
+				put((byte) '\n');
+			}
+		}
+		put(FILES);
+		put(RULE);
+	}
+
+	private void fen(Position position, int fullmove) {
+		for (int r = 0; r < 8; r++) {
+			int empty = 0;
+			for (int c = 0; c < 8; c++) {
+				char symbol = position.pieceAt(r * 8 + c);
+				if (symbol == '.') {
+					empty++;
+					continue;
+				}
+				if (empty > 0) {
+					put((byte) ('0' + empty));
+					empty = 0;
+				}
+				put((byte) symbol);
+			}
+			if (empty > 0) {
+				put((byte) ('0' + empty));
+			}
+			put((byte) (r < 7 ? '/' : ' '));
+		}
+		put((byte) (position.whiteToMove() ? 'w' : 'b'));
+		put((byte) ' ');
+		int rights = position.castlingRights();
+		if (rights == 0) {
+			put((byte) '-');
+		} else {
+			for (int i = 0; i < 4; i++) {
+				if ((rights & 1 << i) != 0) { // WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE, BLACK_QUEENSIDE
+					put((byte) "KQkq".charAt(i));
+				}
+			}
+		}
+		put((byte) ' ');
+		if (position.epSquare() == Logic.NO_EN_PASSANT) {
+			put((byte) '-');
+		} else {
+			put(ascii(Command.squareName(position.epSquare())));
+		}
+		put((byte) ' ');
+		number(position.halfmoveClock());
+		put((byte) ' ');
+		number(fullmove);
+		put((byte) '\n');
+	}
+
+	private void number(int n) {
+		if (n >= 10) {
+			number(n / 10);
+		}
+		put((byte) ('0' + n % 10));
+	}
+
+	private void put(byte b) {
+		if (len == buf.length) {
+			buf = Arrays.copyOf(buf, len * 2);
+		}
+		buf[len++] = b;
+	}
+
+	private void put(byte[] bytes) {
+		if (len + bytes.length > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(len * 2, len + bytes.length));
+		}
+		System.arraycopy(bytes, 0, buf, len, bytes.length);
+		len += bytes.length;
+	}
+
+	private static byte[] ascii(String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -1,6 +1,11 @@
 package main;
 
+import metrics.Metrics;
+import states.Command;
 import states.GameStartState;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Scanner;
 
 /**
@@ -14,10 +19,30 @@ import java.util.Scanner;
  */
 public class ChessDriver {
 
-	public static void main(String[] args) {
+	/**
+	 * Runs the interactive game. With {@code --record <file>}, every input
+	 * line is also appended to {@code file} for later replay by
+	 * {@link ReplayProfiler}.
+	 *
+	 * @param args optional {@code --record <file>}
+	 * @throws IOException if the record file cannot be opened
+	 */
+	public static void main(String[] args) throws IOException {
+		PrintWriter recorder = null;
+		if (args.length == 2 && args[0].equals("--record")) {
+			recorder = new PrintWriter(new FileWriter(args[1], true), true);
+		}
+
 		System.out.println("--- State Pattern Chess Game Driver ---");
 		System.out.println("Type 'quit' or 'exit' to end the simulation.");
 
+		// Expose the metrics registry over JMX (also printed by 'stats')
+		// Starting the platform MBean server is most of the JVM's startup time;
+		// short-lived runs can skip it with -Dchess.jmx=false
+		if (!"false".equals(System.getProperty("chess.jmx"))) {
+			Metrics.registerMBean();
+		}
+
 		// Initial Setup: Create a new game instance
 		ChessGame game = new ChessGame();
 
@@ -35,19 +60,27 @@ public class ChessDriver {
 			System.out.print(game.getState().prompt());
 
 			if (scanner.hasNextLine()) {
-				input = scanner.nextLine().trim();
+				input = scanner.nextLine();
+				if (recorder != null) {
+					recorder.println(input);
+				}
 
-				if (input.equalsIgnoreCase("quit") || input.equalsIgnoreCase("exit")) {
+				// Parse once; states dispatch on the command type
+				Command cmd = Command.parse(input);
+				if (cmd.type() == Command.Type.QUIT) {
 					break;
 				}
 
 				// The current state handles the command, including state transitions
 				// This is the core of the State Pattern application.
-				game.getState().handleCommand(input);
+				game.getState().handleCommand(cmd);
 			}
 		}
 
 		System.out.println("\n--- Simulation Ended ---");
 		scanner.close();
+		if (recorder != null) {
+			recorder.close();
+		}
 	}
 }
\ No newline at end of file
@@ -1,8 +1,20 @@
 package main;
 
+import states.CheckState;
+import states.GameOverState;
+import states.NormalPlayBlackState;
 import states.NormalPlayState;
+import states.NormalPlayWhiteState;
 import states.State;
 import pieces.*;
+import engine.Search;
+import metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * The Context class for the State Pattern. It holds the current State
@@ -13,10 +25,56 @@ import pieces.*;
  */
 public class ChessGame {
 
+	// Ring of position keys; the fifty-move draw ends a game long before the
+	// reversible window (at most 100 plies) could wrap around it
+	private static final int HISTORY_SIZE = 128;
+	private static final int HISTORY_MASK = HISTORY_SIZE - 1;
+
+	// Runs every game's background analysis; daemon threads, created on first use
+	private static final ExecutorService ANALYSIS_POOL = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(), r -> {
+				Thread t = new Thread(r, "analysis");
+				t.setDaemon(true);
+				return t;
+			});
+
 	// Core Game Attributes
 	private State state;
 	private boolean isWhiteToMove;
 	private Piece[][] board;
+	// Castling rights (Logic.WHITE_KINGSIDE ...) and en-passant target square
+	private int castlingRights;
+	private int epSquare = Logic.NO_EN_PASSANT;
+	private final MoveUndo undo = new MoveUndo();
+	// Zobrist key of the position without en passant, updated per move
+	private long boardKey;
+	// Position keys by ply (ply & HISTORY_MASK); only the last reversiblePlies + 1 matter
+	private final long[] keyHistory = new long[HISTORY_SIZE];
+	private int ply;
+	// Plies since the last capture, pawn move or loss of castling rights
+	private int reversiblePlies;
+	// Plies since the last capture or pawn move (fifty-move rule)
+	private int halfmoveClock;
+	// Immutable copy of the position for other threads, replaced after every move
+	private volatile Position position;
+	// Moves played since the last reset, encoded as from | to << 6 | promotion << 12
+	private short[] moves = new short[64];
+	private int moveCount;
+	// Plies before the first of them, from a loaded FEN's fullmove number and side to move
+	private int startPly;
+	// Legal destinations by square, kept across moves where they cannot have changed
+	private final MoveCache moveCache = new MoveCache();
+	// Cached text of the position for show
+	private final BoardRenderer renderer = new BoardRenderer();
+	// Observers of moves and resets; replaced (never mutated) on add/remove
+	private MoveListener[] listeners = new MoveListener[0];
+	// Iterative transitions: a setState made inside enter() is queued here
+	private State pendingState;
+	private boolean transitioning;
+	private TransitionTracer tracer;
+	// The running background analysis, cancelled by the next move or reset
+	private Search analysis;
+	private Future<?> analysisTask;
 
 	/**
 	 * Constructs a new ChessGame and initializes the starting state.
@@ -31,16 +89,88 @@ public class ChessGame {
 	}
 
 	/**
-	 * Changes the current state of the game and automatically calls the
-	 * {@code enter()} method on the new state instance.
+	 * Changes the current state of the game, calling {@code exit()} on the old
+	 * state and {@code enter()} on the new one.
+	 *
+	 * States such as GameStartState and CheckmateState call setState from
+	 * their own {@code enter()}. Such a nested call is queued and run by the
+	 * outermost call once the current {@code enter()} returns, so a chain of
+	 * transitions runs in a loop instead of growing the stack.
 	 *
 	 * @param state The new State object to transition to.
 	 */
 	public void setState(State state) {
+		if (transitioning) {
+			pendingState = state;
+			return;
+		}
+		transitioning = true;
+		try {
+			int chainIndex = 0;
+			for (State next = state; next != null; next = pendingState) {
+				pendingState = null;
+				State prev = this.state;
+				long start = System.nanoTime();
+				if (prev != null) {
+					prev.exit();
+				}
+				this.state = next;
+				Metrics.stateEntered(next.getClass());
+				// Automatically call enter on the new state
+				// This is necessary for GameStartState to transition immediately.
+				next.enter();
+				if (tracer != null) {
+					tracer.record(prev == null ? null : prev.getClass(), next.getClass(), start,
+							System.nanoTime() - start, chainIndex);
+				}
+				chainIndex++;
+			}
+		} finally {
+			transitioning = false;
+			pendingState = null;
+		}
+	}
+
+	/**
+	 * Records every state transition of this game into {@code tracer}, or
+	 * stops tracing if {@code null}.
+	 *
+	 * @param tracer ring buffer to record into
+	 */
+	public void setTracer(TransitionTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	/**
+	 * Replaces the current state without calling {@code enter()}. Used when
+	 * restoring a saved session, where the state's entry side effects have
+	 * already happened.
+	 *
+	 * @param state The restored State object.
+	 */
+	void restoreState(State state) {
 		this.state = state;
-		// Automatically call enter on the new state
-		// This is necessary for GameStartState to transition immediately.
-		state.enter();
+	}
+
+	/**
+	 * Sets the state implied by the current position without calling
+	 * {@code enter()}: game over on checkmate, check, or normal play for the
+	 * side to move. Used after replaying moves, where no output is wanted.
+	 */
+	void restorePlayState() {
+		String toMove = isWhiteToMove ? "WHITE" : "BLACK";
+		String draw;
+		if (board != null && Logic.isCheckmated(board, toMove, epSquare)) {
+			state = new GameOverState(this, "checkmate by " + (isWhiteToMove ? "BLACK" : "WHITE"));
+		} else if ((draw = drawReason()) != null) {
+			state = new GameOverState(this, "draw by " + draw);
+		} else if (board != null && Logic.isInCheck(board, toMove)) {
+			state = new CheckState(this);
+		} else if (isWhiteToMove) {
+			state = new NormalPlayWhiteState(this);
+		} else {
+			state = new NormalPlayBlackState(this);
+		}
 	}
 
 	// -- State-Required Methods --
@@ -70,6 +200,127 @@ public class ChessGame {
         return board;
     }
 
+	/**
+	 * Returns an immutable snapshot of the current position, safe to read
+	 * from any thread while the game goes on. A new snapshot is published
+	 * after every move (with the turn already passed to the opponent),
+	 * reset and restore.
+	 *
+	 * @return the position, or {@code null} before the first reset
+	 */
+	public Position getPosition() {
+		return position;
+	}
+
+	/** Returns the castling rights mask ({@code Logic.WHITE_KINGSIDE} ...). */
+	public int getCastlingRights() {
+		return castlingRights;
+	}
+
+	/** Returns the en-passant target square, or {@code Logic.NO_EN_PASSANT}. */
+	public int getEpSquare() {
+		return epSquare;
+	}
+
+	/** Returns the number of plies since the last capture or pawn move. */
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	/**
+	 * Returns the Zobrist key of the current position (pieces, side to move,
+	 * castling rights and a capturable en-passant square).
+	 */
+	public long getPositionKey() {
+		return keyHistory[ply & HISTORY_MASK];
+	}
+
+	/**
+	 * Counts how often the current position has occurred, including now.
+	 * Only the positions since the last irreversible move (capture, pawn
+	 * move, loss of castling rights) are scanned, and only those with the
+	 * same side to move.
+	 *
+	 * @return 1 for a new position, 3 or more for a threefold repetition
+	 */
+	public int repetitionCount() {
+		long key = keyHistory[ply & HISTORY_MASK];
+		int window = Math.min(reversiblePlies, HISTORY_SIZE - 1);
+		int count = 1;
+		// The same position can recur at the earliest four plies later
+		for (int back = 4; back <= window; back += 2) {
+			if (keyHistory[(ply - back) & HISTORY_MASK] == key) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Is the game drawn for the side to move? Call once the turn has been
+	 * handed over and checkmate has been ruled out.
+	 *
+	 * @return "stalemate", "threefold repetition" or "fifty-move rule", or
+	 *         {@code null} if play goes on
+	 */
+	public String drawReason() {
+		if (board == null) {
+			return null;
+		}
+		if (Logic.isStalemated(board, isWhiteToMove ? "WHITE" : "BLACK", castlingRights, epSquare)) {
+			return "stalemate";
+		} else if (repetitionCount() >= 3) {
+			return "threefold repetition";
+		} else if (halfmoveClock >= 100) {
+			return "fifty-move rule";
+		}
+		return null;
+	}
+
+	/**
+	 * Starts analyzing the current position on a background thread, stopping
+	 * any analysis already running for this game. The search works on a board
+	 * built from {@link #getPosition()}, so play can go on meanwhile; the next move or reset
+	 * cancels it.
+	 *
+	 * @param limits   depth, line count and time budget
+	 * @param progress receives each completed depth, on the analysis thread
+	 * @param finished receives the last completed depth (or {@code null}) when
+	 *                 the analysis ends or is cancelled, on the analysis thread
+	 * @return {@code false} if no game has been started
+	 */
+	public boolean startAnalysis(Search.Limits limits, Consumer<Search.Info> progress,
+			Consumer<Search.Info> finished) {
+		stopAnalysis();
+		Position pos = position;
+		if (pos == null) {
+			return false;
+		}
+		Search search = new Search(new Search.Settings("analysis", limits.maxDepth(), 5));
+		analysis = search;
+		// The analysis thread builds its own board from the immutable snapshot
+		analysisTask = ANALYSIS_POOL.submit(() -> finished.accept(search.analyze(pos.toBoard(),
+				pos.whiteToMove(), pos.castlingRights(), pos.epSquare(), limits, progress)));
+		return true;
+	}
+
+	/**
+	 * Asks the running analysis, if any, to stop. It finishes its current
+	 * node batch and reports its last completed depth.
+	 *
+	 * @return {@code true} if an analysis was running
+	 */
+	public boolean stopAnalysis() {
+		if (analysis == null) {
+			return false;
+		}
+		analysis.cancel();
+		boolean wasRunning = !analysisTask.isDone();
+		analysis = null;
+		analysisTask = null;
+		return wasRunning;
+	}
+
 	/**
 	 * Prints the current arrangement of pieces on the 8x8 board to the console.
 	 * If the board has not been initialized (i.e., before the 'reset' command),
@@ -79,31 +330,29 @@ public class ChessGame {
 	 *         types).
 	 */
 	public Object printBoard() {
-		// This is a placeholder for printing the board.
-		// The current state classes call this when the user types 'show'.
-		System.out.println("-------------------------");
-		System.out.println("  A B C D E F G H");
-		// Print board for demonstration. Note: We assume the board array is
-		// initialized.
-		if (board != null) {
-			for (int r = 0; r < 8; r++) {
-				// Determine rank number (8 down to 1)
-				System.out.print((8 - r) + " ");
-				for (int c = 0; c < 8; c++) {
-					Piece piece = board[r][c];
-					// Display piece symbol or a dot for empty square
-					System.out.print((piece != null ? piece.symbol() : '.') + " ");
-				}
-				System.out.println(); // Newline after each rank
-			}
-		} else {
-			System.out.println("Board not yet initialized. Use 'reset' to start a game.");
-		}
-		System.out.println("  A B C D E F G H");
-		System.out.println("-------------------------");
+		printBoard(BoardRenderer.Format.ASCII);
 		return null; // Return type of Object is unusual, but kept for compatibility.
 	}
 
+	/**
+	 * Prints the current position in the given format with a single write.
+	 * The text is cached per position, so repeating {@code show} on an
+	 * unchanged position costs only the write.
+	 *
+	 * @param format ASCII or Unicode board, or FEN
+	 */
+	public void printBoard(BoardRenderer.Format format) {
+		renderer.print(position, format, getFullmoveNumber(), System.out);
+	}
+
+	/**
+	 * Returns the FEN fullmove number: 1 at the start, incremented after each
+	 * BLACK move (continuing from the number of a loaded FEN).
+	 */
+	public int getFullmoveNumber() {
+		return (startPly + moveCount) / 2 + 1;
+	}
+
 	/**
 	 * Attempts to execute a move command (e.g., "e2 e4").
 	 */
@@ -114,52 +363,327 @@ public class ChessGame {
 		}
 
 		String[] parts = moveCommand.trim().split("\\s+");
-		if (parts.length != 2) {
+		int promotion = parts.length == 3 ? Logic.promotionCode(parts[2].charAt(0)) : Logic.PROMO_NONE;
+		if (parts.length < 2 || parts.length > 3 || promotion < 0) {
 			System.out.println("[GAME LOG] Invalid move format. Use 'e2 e4'.");
 			return false;
 		}
 
-		String from = parts[0];
-		String to = parts[1];
-		String color = isWhiteToMove ? "WHITE" : "BLACK";
+		int[] a = Logic.parseSquare(parts[0]);
+		int[] b = Logic.parseSquare(parts[1]);
+		if (a[0] < 0 || a[0] > 7 || a[1] < 0 || a[1] > 7 || b[0] < 0 || b[0] > 7 || b[1] < 0 || b[1] > 7) {
+			System.out.println("[GAME LOG] Illegal move for " + (isWhiteToMove ? "WHITE" : "BLACK") + ".");
+			return false;
+		}
+		return tryMove(a[0] * 8 + a[1], b[0] * 8 + b[1], promotion);
+	}
 
-		if (!Logic.isLegal(board, from, to, color)) {
+	/**
+	 * Attempts to execute a move given as square indices ({@code row * 8 + col},
+	 * row 0 = rank 8, col 0 = 'a'), as produced by the command parser.
+	 *
+	 * @param from origin square index
+	 * @param to   destination square index
+	 * @return {@code true} if the move was legal and has been played
+	 */
+	public boolean tryMove(int from, int to) {
+		return tryMove(from, to, Logic.PROMO_NONE);
+	}
+
+	/**
+	 * Attempts to execute a move given as square indices, promoting a pawn
+	 * that reaches the last rank to the given piece (a queen if
+	 * {@code Logic.PROMO_NONE}).
+	 *
+	 * @param from      origin square index
+	 * @param to        destination square index
+	 * @param promotion one of the {@code Logic.PROMO_*} codes
+	 * @return {@code true} if the move was legal and has been played
+	 */
+	public boolean tryMove(int from, int to, int promotion) {
+		long start = System.nanoTime();
+		boolean played = playIfLegal(Logic.move(from, to, promotion));
+		Metrics.TRY_MOVE.recordSince(start);
+		if (played) {
+			Metrics.MOVES_PLAYED.increment();
+		} else {
+			Metrics.ILLEGAL_MOVES.increment();
+		}
+		return played;
+	}
+
+	private boolean playIfLegal(int move) {
+		if (board == null) {
+			System.out.println("[GAME LOG] Game not started. Use 'reset' command.");
+			return false;
+		}
+
+		String color = isWhiteToMove ? "WHITE" : "BLACK";
+		Metrics.CACHED_LEGALITY_CHECKS.increment();
+		if ((legalMovesFrom(Logic.from(move)) >>> Logic.to(move) & 1) == 0 || !Logic.promotionFits(board, move)) {
 			System.out.println("[GAME LOG] Illegal move for " + color + ".");
 			return false;
 		}
 
-		// Actually move the piece
-		int[] a = Logic.parseSquare(from);
-		int[] b = Logic.parseSquare(to);
-		Piece mover = board[a[0]][a[1]];
-		board[b[0]][b[1]] = mover;
-		board[a[0]][a[1]] = null;
-		if (mover != null) mover.setPos(b[0], b[1]);
+		stopAnalysis();
 
+		// Actually move the piece (and the rook, captured pawn or promoted piece)
+		int castlingBefore = castlingRights;
+		epSquare = Logic.makeMove(board, move, undo);
+		castlingRights = Logic.castlingAfter(castlingRights, move);
+		move = undo.move();
+
+		boolean irreversible = undo.captured() != null || undo.mover() instanceof Pawn;
+		halfmoveClock = irreversible ? 0 : halfmoveClock + 1;
+		reversiblePlies = irreversible || castlingRights != castlingBefore ? 0 : reversiblePlies + 1;
+		// The turn passes to the opponent (the caller toggles it next)
+		boardKey = Zobrist.afterMove(boardKey, undo, castlingBefore, castlingRights);
+		keyHistory[++ply & HISTORY_MASK] = boardKey ^ Zobrist.epKey(board, epSquare, !isWhiteToMove);
+		position = position.afterMove(undo, castlingRights, epSquare, halfmoveClock, keyHistory[ply & HISTORY_MASK]);
+
+		if (moveCount == moves.length) {
+			moves = Arrays.copyOf(moves, moveCount * 2);
+		}
+		moves[moveCount++] = (short) move;
+
+		for (MoveListener l : listeners) {
+			l.onMove(this, move);
+		}
 		return true;
 	}
 
-	// Minimal implementation: sets up pawns, rooks, kings for both sides
+	/**
+	 * Returns the squares the piece on {@code square} can legally move to,
+	 * e.g. to highlight them. Answers are cached per position and square,
+	 * and the movement of pieces a move did not affect is reused from the
+	 * previous position, so repeated queries cost a lookup.
+	 *
+	 * @param square square index ({@code row * 8 + col}, row 0 = rank 8)
+	 * @return bit set of destination square indices; empty if the square
+	 *         does not hold a piece of the side to move or no game was
+	 *         started
+	 */
+	public long legalMovesFrom(int square) {
+		return moveCache.legalTargets(board, position, isWhiteToMove, square);
+	}
+
+	/**
+	 * Registers an observer for moves and resets of this game.
+	 *
+	 * @param listener the observer to add
+	 */
+	public void addMoveListener(MoveListener listener) {
+		MoveListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+		next[listeners.length] = listener;
+		listeners = next;
+	}
+
+	/**
+	 * Removes an observer previously added with {@link #addMoveListener}.
+	 *
+	 * @param listener the observer to remove
+	 */
+	public void removeMoveListener(MoveListener listener) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i] == listener) {
+				MoveListener[] next = new MoveListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, next, 0, i);
+				System.arraycopy(listeners, i + 1, next, i, next.length - i);
+				listeners = next;
+				return;
+			}
+		}
+	}
+
+	/** Returns the number of moves played since the last reset. */
+	public int getMoveCount() {
+		return moveCount;
+	}
+
+	/**
+	 * Returns a move played since the last reset.
+	 *
+	 * @param index 0-based ply index
+	 * @return the move encoded as {@code from | to << 6 | promotion << 12}
+	 */
+	public int getMove(int index) {
+		return moves[index];
+	}
+
+	/**
+	 * Returns the keys of the positions since the last irreversible move,
+	 * oldest first and ending with the current one, for snapshots.
+	 */
+	long[] repetitionWindow() {
+		int n = Math.min(reversiblePlies, HISTORY_SIZE - 1) + 1;
+		long[] window = new long[n];
+		for (int i = 0; i < n; i++) {
+			window[i] = keyHistory[(ply - n + 1 + i) & HISTORY_MASK];
+		}
+		return window;
+	}
+
+	/**
+	 * Restores the position, turn and move history from a snapshot.
+	 *
+	 * @param board        the board, or {@code null} if no game was started
+	 * @param isWhiteToMove side to move
+	 * @param castlingRights castling rights mask
+	 * @param epSquare     en-passant target square
+	 * @param halfmoveClock plies since the last capture or pawn move
+	 * @param window       keys from {@link #repetitionWindow()}, or empty
+	 * @param moves        encoded moves; the array is adopted, not copied
+	 * @param moveCount    number of valid entries in {@code moves}
+	 */
+	void restore(Piece[][] board, boolean isWhiteToMove, int castlingRights, int epSquare, int halfmoveClock,
+			long[] window, short[] moves, int moveCount) {
+		this.board = board;
+		this.isWhiteToMove = isWhiteToMove;
+		this.castlingRights = castlingRights;
+		this.epSquare = epSquare;
+		this.moves = moves.length == 0 ? new short[64] : moves;
+		this.moveCount = moveCount;
+		startPly = isWhiteToMove == (moveCount % 2 == 0) ? 0 : 1;
+		startHistory(halfmoveClock);
+		if (board != null && window.length > 0) {
+			int n = Math.min(window.length, HISTORY_SIZE);
+			for (int i = 0; i < n; i++) {
+				keyHistory[i] = window[window.length - n + i];
+			}
+			ply = n - 1;
+			reversiblePlies = n - 1;
+		}
+	}
+
+	/** Starts a fresh key history at the current position. */
+	private void startHistory(int halfmoveClock) {
+		this.halfmoveClock = halfmoveClock;
+		ply = 0;
+		reversiblePlies = 0;
+		if (board != null) {
+			boardKey = Zobrist.key(board, isWhiteToMove, castlingRights);
+			keyHistory[0] = boardKey ^ Zobrist.epKey(board, epSquare, isWhiteToMove);
+			position = Position.of(board, isWhiteToMove, castlingRights, epSquare, halfmoveClock, keyHistory[0]);
+		} else {
+			position = null;
+		}
+	}
+
+	// Sets up the standard starting position with full castling rights
 	public void resetPosition() {
+		stopAnalysis();
 		board = new Piece[8][8];
 		isWhiteToMove = true;
+		castlingRights = Logic.ALL_CASTLING;
+		epSquare = Logic.NO_EN_PASSANT;
+		moveCount = 0;
+		startPly = 0;
 
-		// Place white pawns
+		// Place pawns
 		for (int c = 0; c < 8; c++) {
 			board[6][c] = new Pawn(new int[]{6, c}, "WHITE");
+			board[1][c] = new Pawn(new int[]{1, c}, "BLACK");
 		}
-		// Place black pawns
+		// Place back ranks
+		String backRank = "RNBQKBNR";
 		for (int c = 0; c < 8; c++) {
-			board[1][c] = new Pawn(new int[]{1, c}, "BLACK");
+			board[7][c] = Piece.create(backRank.charAt(c), 7, c);
+			board[0][c] = Piece.create(Character.toLowerCase(backRank.charAt(c)), 0, c);
+		}
+		startHistory(0);
+
+		for (MoveListener l : listeners) {
+			l.onReset(this);
+		}
+	}
+
+	/**
+	 * Sets up an arbitrary position from a FEN string (placement, side to
+	 * move, castling, en passant, halfmove clock, fullmove number), e.g. for
+	 * analysis or test positions. The move history is cleared and move
+	 * listeners are not notified, so such games are not move-logged.
+	 *
+	 * Every field is checked before anything changes: the placement must
+	 * have 8 ranks of 8 files and one king per side, and an en-passant square
+	 * must be on rank 6 with WHITE to move or rank 3 with BLACK to move. On a
+	 * malformed FEN the game is left as it was.
+	 *
+	 * @param fen position in Forsyth-Edwards Notation
+	 * @throws IllegalArgumentException if the FEN is malformed
+	 */
+	public void loadFen(String fen) {
+		String[] fields = fen.trim().split("\\s+");
+		if (fields.length < 2 || fields.length > 6) {
+			throw new IllegalArgumentException("Bad FEN: " + fen);
+		}
+		String[] ranks = fields[0].split("/", -1);
+		if (ranks.length != 8) {
+			throw new IllegalArgumentException("Bad FEN placement, expected 8 ranks: " + fields[0]);
+		}
+		Piece[][] next = new Piece[8][8];
+		int whiteKings = 0, blackKings = 0;
+		for (int r = 0; r < 8; r++) {
+			int c = 0;
+			for (char ch : ranks[r].toCharArray()) {
+				if (ch >= '1' && ch <= '8') {
+					c += ch - '0';
+				} else if (c < 8 && "KQRBNPkqrbnp".indexOf(ch) >= 0) {
+					next[r][c] = Piece.create(ch, r, c);
+					whiteKings += ch == 'K' ? 1 : 0;
+					blackKings += ch == 'k' ? 1 : 0;
+					c++;
+				} else {
+					c = 9; // not a piece, or past the last file
+					break;
+				}
+			}
+			if (c != 8) {
+				throw new IllegalArgumentException("Bad FEN placement, rank " + (8 - r) + " is not 8 files: " + fields[0]);
+			}
+		}
+		if (whiteKings != 1 || blackKings != 1) {
+			throw new IllegalArgumentException("Bad FEN placement, each side needs exactly one king: " + fields[0]);
+		}
+		if (!fields[1].equals("w") && !fields[1].equals("b")) {
+			throw new IllegalArgumentException("Bad FEN side to move: " + fields[1]);
+		}
+		boolean white = fields[1].equals("w");
+		int rights = 0;
+		String castling = fields.length > 2 ? fields[2] : "-";
+		if (!castling.equals("-") && !castling.matches("K?Q?k?q?")) {
+			throw new IllegalArgumentException("Bad FEN castling rights: " + castling);
+		}
+		rights |= castling.indexOf('K') >= 0 ? Logic.WHITE_KINGSIDE : 0;
+		rights |= castling.indexOf('Q') >= 0 ? Logic.WHITE_QUEENSIDE : 0;
+		rights |= castling.indexOf('k') >= 0 ? Logic.BLACK_KINGSIDE : 0;
+		rights |= castling.indexOf('q') >= 0 ? Logic.BLACK_QUEENSIDE : 0;
+		int ep = Logic.NO_EN_PASSANT;
+		if (fields.length > 3 && !fields[3].equals("-")) {
+			// the square a pawn of the side not to move has just passed over
+			if (!fields[3].matches(white ? "[a-h]6" : "[a-h]3")) {
+				throw new IllegalArgumentException("Bad FEN en-passant square: " + fields[3]);
+			}
+			int[] sq = Logic.parseSquare(fields[3]);
+			ep = sq[0] * 8 + sq[1];
+		}
+		int halfmove = fields.length > 4 ? parseCount(fields[4], "halfmove clock") : 0;
+		int fullmove = fields.length > 5 ? Math.max(parseCount(fields[5], "fullmove number"), 1) : 1;
+
+		stopAnalysis();
+		board = next;
+		isWhiteToMove = white;
+		castlingRights = rights;
+		epSquare = ep;
+		moveCount = 0;
+		startPly = 2 * (fullmove - 1) + (isWhiteToMove ? 0 : 1);
+		startHistory(halfmove);
+	}
+
+	private static int parseCount(String field, String name) {
+		if (!field.matches("\\d{1,5}")) {
+			throw new IllegalArgumentException("Bad FEN " + name + ": " + field);
 		}
-		// Place rooks
-		board[7][0] = new Rook(new int[]{7, 0}, "WHITE");
-		board[7][7] = new Rook(new int[]{7, 7}, "WHITE");
-		board[0][0] = new Rook(new int[]{0, 0}, "BLACK");
-		board[0][7] = new Rook(new int[]{0, 7}, "BLACK");
-		// Place kings
-		board[7][4] = new King(new int[]{7, 4}, "WHITE");
-		board[0][4] = new King(new int[]{0, 4}, "BLACK");
+		return Integer.parseInt(field);
 	}
 
 	public void toggleTurn() {
@@ -0,0 +1,226 @@
+package main;
+
+import java.lang.invoke.VarHandle;
+
+import pieces.Logic;
+import pieces.Position;
+
+/**
+ * Fans one game's moves out to any number of spectators as 8-byte deltas
+ * instead of rendered boards.
+ *
+ * The game thread appends one delta per move (or reset) to a fixed-size
+ * ring and publishes the new sequence number through a volatile write;
+ * spectators read the ring without locks, each at its own pace through a
+ * {@link Subscription}. A spectator that falls more than the ring's capacity
+ * behind, or that joins late, is sent the latest full {@link Position}
+ * instead and continues with the deltas after it.
+ *
+ * Delta layout:
+ * <pre>
+ *   bits  0-14  move        from | to &lt;&lt; 6 | promotion &lt;&lt; 12 (0 for a reset)
+ *   bits 16-19  status      STATUS_* after the move
+ *   bits 20-23  type        TYPE_MOVE or TYPE_RESET
+ *   bits 32-63  check       low 32 bits of the resulting position key
+ * </pre>
+ * A client applying deltas to its own copy of the position can compare the
+ * check bits with its own key to detect a desync.
+ */
+public class GameBroadcast implements MoveListener {
+
+	public static final int TYPE_MOVE = 1;
+	public static final int TYPE_RESET = 2;
+
+	public static final int STATUS_NORMAL = 0;
+	public static final int STATUS_CHECK = 1;
+	public static final int STATUS_CHECKMATE = 2;
+	public static final int STATUS_STALEMATE = 3;
+	public static final int STATUS_REPETITION = 4;
+	public static final int STATUS_FIFTY_MOVES = 5;
+
+	/** Receives what a {@link Subscription} has missed. */
+	public interface Handler {
+
+		/**
+		 * The full position as of sequence number {@code seq}; deltas continue
+		 * from {@code seq + 1}.
+		 */
+		void onSnapshot(long seq, Position position);
+
+		/** One delta, with its sequence number (the first delta is 1). */
+		void onDelta(long seq, long delta);
+	}
+
+	/** A snapshot and the sequence number it corresponds to, published together. */
+	private record Keyframe(long seq, Position position) {
+	}
+
+	private final long[] ring;
+	private final int mask;
+	// Written only by the game thread; a volatile write publishes each slot
+	private volatile long published;
+	private volatile Keyframe keyframe;
+
+	/**
+	 * Creates a broadcast; add it to the game with
+	 * {@link ChessGame#addMoveListener}.
+	 *
+	 * @param game     the game to broadcast; its current position (null if
+	 *                 not started) is the first snapshot
+	 * @param capacity deltas kept for slow spectators, a power of two of at
+	 *                 least 2
+	 */
+	public GameBroadcast(ChessGame game, int capacity) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		ring = new long[capacity];
+		mask = capacity - 1;
+		keyframe = new Keyframe(0, game.getPosition());
+	}
+
+	/** @return sequence number of the latest delta, 0 if none yet */
+	public long published() {
+		return published;
+	}
+
+	@Override
+	public void onMove(ChessGame game, int move) {
+		Position position = game.getPosition();
+		publish(TYPE_MOVE, move, status(game, position), position);
+	}
+
+	@Override
+	public void onReset(ChessGame game) {
+		publish(TYPE_RESET, 0, STATUS_NORMAL, game.getPosition());
+	}
+
+	private void publish(int type, int move, int status, Position position) {
+		long seq = published + 1;
+		ring[(int) (seq & mask)] = encode(type, move, status, position.key());
+		keyframe = new Keyframe(seq, position);
+		published = seq; // releases the slot and the keyframe to readers
+	}
+
+	/**
+	 * Status of the position just reached. The live board is read on the
+	 * game thread, right after the move; the side to move is taken from the
+	 * snapshot, which has already passed the turn.
+	 */
+	private static int status(ChessGame game, Position position) {
+		String toMove = position.whiteToMove() ? "WHITE" : "BLACK";
+		boolean inCheck = Logic.isInCheck(game.getBoard(), toMove);
+		boolean canMove = Logic.hasLegalMove(game.getBoard(), toMove, position.castlingRights(),
+				position.epSquare());
+		if (!canMove) {
+			return inCheck ? STATUS_CHECKMATE : STATUS_STALEMATE;
+		} else if (game.repetitionCount() >= 3) {
+			return STATUS_REPETITION;
+		} else if (position.halfmoveClock() >= 100) {
+			return STATUS_FIFTY_MOVES;
+		}
+		return inCheck ? STATUS_CHECK : STATUS_NORMAL;
+	}
+
+	/**
+	 * Starts following the game from its current state: the first
+	 * {@link Subscription#poll} delivers the latest snapshot.
+	 *
+	 * @return a new subscription, to be polled by one thread
+	 */
+	public Subscription subscribe() {
+		return new Subscription(-1);
+	}
+
+	/**
+	 * Resumes following the game after the delta with sequence number
+	 * {@code seq}, e.g. after a reconnect. If that delta is no longer in the
+	 * ring, the first poll delivers a snapshot instead.
+	 *
+	 * @param seq last sequence number the spectator has applied
+	 * @return a new subscription, to be polled by one thread
+	 */
+	public Subscription subscribeFrom(long seq) {
+		return new Subscription(seq);
+	}
+
+	/** One spectator's read position in the ring. */
+	public final class Subscription {
+
+		private long cursor; // last sequence number delivered, -1 before the first snapshot
+
+		private Subscription(long cursor) {
+			this.cursor = cursor;
+		}
+
+		/** @return the last sequence number delivered */
+		public long cursor() {
+			return cursor;
+		}
+
+		/**
+		 * Delivers everything published since the last call: the missed
+		 * deltas, or a snapshot followed by the deltas after it if the
+		 * spectator has fallen out of the ring.
+		 *
+		 * @param handler receives the snapshot and deltas, in order
+		 * @return number of deltas delivered (not counting a snapshot)
+		 */
+		public int poll(Handler handler) {
+			int delivered = 0;
+			long end = published;
+			if (cursor < 0) {
+				end = Math.max(end, catchUp(handler));
+			}
+			while (cursor < end) {
+				long seq = cursor + 1;
+				long delta = ring[(int) (seq & mask)];
+				VarHandle.loadLoadFence();
+				// Valid only if the writer has not reached the slot meanwhile; it may
+				// already be writing the slot after 'published', hence the - 1
+				if (published - seq >= ring.length - 1) {
+					end = Math.max(end, catchUp(handler));
+					continue;
+				}
+				handler.onDelta(seq, delta);
+				cursor = seq;
+				delivered++;
+			}
+			return delivered;
+		}
+
+		/** Delivers the latest snapshot and moves the cursor to it. */
+		private long catchUp(Handler handler) {
+			Keyframe k = keyframe;
+			handler.onSnapshot(k.seq(), k.position());
+			cursor = k.seq();
+			return cursor;
+		}
+	}
+
+	// -- Delta decoding --
+
+	static long encode(int type, int move, int status, long key) {
+		return move & 0x7FFF | (long) status << 16 | (long) type << 20 | key << 32;
+	}
+
+	/** @return the move of a delta, {@code from | to << 6 | promotion << 12} */
+	public static int move(long delta) {
+		return (int) delta & 0x7FFF;
+	}
+
+	/** @return one of the STATUS_* codes */
+	public static int status(long delta) {
+		return (int) (delta >>> 16) & 15;
+	}
+
+	/** @return TYPE_MOVE or TYPE_RESET */
+	public static int type(long delta) {
+		return (int) (delta >>> 20) & 15;
+	}
+
+	/** @return the low 32 bits of the position key after the delta */
+	public static int check(long delta) {
+		return (int) (delta >>> 32);
+	}
+}
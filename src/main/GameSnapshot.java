@@ -0,0 +1,224 @@
+package main;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import pieces.Logic;
+import pieces.Piece;
+import states.CheckState;
+import states.GameOverState;
+import states.NormalPlayBlackState;
+import states.NormalPlayWhiteState;
+import states.State;
+
+/**
+ * Compact binary snapshot of a complete {@link ChessGame} session: the
+ * position, side to move, current state (with its data, such as the
+ * {@link GameOverState} reason) and the move history.
+ *
+ * Layout (version 3):
+ * <pre>
+ *   byte   version
+ *   byte   flags        bit 0 = board initialized, bit 1 = WHITE to move
+ *   byte   state code   see STATE_* constants
+ *   UTF    reason       only for STATE_GAME_OVER
+ *   32     board        one nibble per square (0 = empty), row 0 first
+ *   byte   castling     rights mask          (only if the board is initialized)
+ *   byte   en passant   target square or -1  (only if the board is initialized)
+ *   short  halfmove clock                    (only if the board is initialized)
+ *   byte   n            repetition window    (only if the board is initialized)
+ *   long*  n keys       positions since the last irreversible move, oldest first
+ *   int    move count
+ *   short* moves        from | to << 6 | promotion << 12
+ * </pre>
+ * Older snapshots are still read: version 1 has no castling or en-passant
+ * bytes, and neither version 1 nor 2 has the clock or the window, so
+ * repetition counting restarts at the restored position.
+ * A started game takes under 60 bytes plus two bytes per move and eight per
+ * reversible ply, and restoring
+ * it does not replay any moves or call any state's {@code enter()}.
+ */
+public final class GameSnapshot {
+
+	private static final int VERSION = 3;
+
+	private static final int FLAG_STARTED = 1;
+	private static final int FLAG_WHITE_TO_MOVE = 2;
+
+	private static final int STATE_NORMAL = 0;
+	private static final int STATE_WHITE = 1;
+	private static final int STATE_BLACK = 2;
+	private static final int STATE_CHECK = 3;
+	private static final int STATE_GAME_OVER = 4;
+
+	// Nibble codes: index in this string, +8 for BLACK. 0 means empty.
+	private static final String PIECE_CODES = ".PNBRQK";
+
+	private GameSnapshot() {
+	}
+
+	/**
+	 * Writes a snapshot of the game. The caller must make sure the game is not
+	 * being played concurrently.
+	 *
+	 * @param game the game to save
+	 * @param out  destination
+	 * @throws IOException if the write fails
+	 */
+	public static void write(ChessGame game, DataOutput out) throws IOException {
+		Piece[][] board = game.getBoard();
+		State state = game.getState();
+
+		int flags = (board != null ? FLAG_STARTED : 0) | (game.isWhiteToMove() ? FLAG_WHITE_TO_MOVE : 0);
+		out.writeByte(VERSION);
+		out.writeByte(flags);
+		out.writeByte(stateCode(state));
+		if (state instanceof GameOverState) {
+			out.writeUTF(((GameOverState) state).getReason());
+		}
+
+		if (board != null) {
+			byte[] packed = new byte[32];
+			for (int sq = 0; sq < 64; sq++) {
+				int code = pieceCode(board[sq >> 3][sq & 7]);
+				packed[sq >> 1] |= (byte) ((sq & 1) == 0 ? code : code << 4);
+			}
+			out.write(packed);
+			out.writeByte(game.getCastlingRights());
+			out.writeByte(game.getEpSquare());
+			out.writeShort(game.getHalfmoveClock());
+			long[] window = game.repetitionWindow();
+			out.writeByte(window.length);
+			for (long key : window) {
+				out.writeLong(key);
+			}
+		}
+
+		int count = game.getMoveCount();
+		out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			out.writeShort(game.getMove(i));
+		}
+	}
+
+	/**
+	 * Reads a snapshot into a new game.
+	 *
+	 * @param in source positioned at the start of a snapshot
+	 * @return the restored game
+	 * @throws IOException if the read fails or the data is not a snapshot
+	 */
+	public static ChessGame read(DataInput in) throws IOException {
+		ChessGame game = new ChessGame();
+		readInto(game, in);
+		return game;
+	}
+
+	/**
+	 * Reads a snapshot into an existing game, replacing its whole session.
+	 *
+	 * @param game the game to overwrite
+	 * @param in   source positioned at the start of a snapshot
+	 * @throws IOException if the read fails or the data is not a snapshot
+	 */
+	public static void readInto(ChessGame game, DataInput in) throws IOException {
+		int version = in.readUnsignedByte();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		int flags = in.readUnsignedByte();
+		int stateCode = in.readUnsignedByte();
+		String reason = stateCode == STATE_GAME_OVER ? in.readUTF() : null;
+
+		Piece[][] board = null;
+		int castling = 0;
+		int ep = Logic.NO_EN_PASSANT;
+		int halfmoveClock = 0;
+		long[] window = new long[0];
+		if ((flags & FLAG_STARTED) != 0) {
+			byte[] packed = new byte[32];
+			in.readFully(packed);
+			board = new Piece[8][8];
+			for (int sq = 0; sq < 64; sq++) {
+				int code = (sq & 1) == 0 ? packed[sq >> 1] & 0xF : (packed[sq >> 1] >> 4) & 0xF;
+				if (code != 0) {
+					board[sq >> 3][sq & 7] = pieceFor(code, sq);
+				}
+			}
+			if (version >= 2) {
+				castling = in.readUnsignedByte() & Logic.ALL_CASTLING;
+				ep = in.readByte();
+			}
+			if (version >= 3) {
+				halfmoveClock = in.readUnsignedShort();
+				window = new long[in.readUnsignedByte()];
+				for (int i = 0; i < window.length; i++) {
+					window[i] = in.readLong();
+				}
+			}
+		}
+
+		int count = in.readInt();
+		if (count < 0) {
+			throw new IOException("Corrupt snapshot: move count " + count);
+		}
+		short[] moves = new short[count];
+		for (int i = 0; i < count; i++) {
+			moves[i] = in.readShort();
+		}
+
+		game.restore(board, (flags & FLAG_WHITE_TO_MOVE) != 0, castling, ep, halfmoveClock, window, moves,
+				count);
+		game.restoreState(stateFor(game, stateCode, reason));
+	}
+
+	private static int stateCode(State state) {
+		if (state instanceof NormalPlayWhiteState) {
+			return STATE_WHITE;
+		} else if (state instanceof NormalPlayBlackState) {
+			return STATE_BLACK;
+		} else if (state instanceof CheckState) {
+			return STATE_CHECK;
+		} else if (state instanceof GameOverState) {
+			return STATE_GAME_OVER;
+		}
+		// Transient states (start, checkmate, the routing shim) resolve to normal play
+		return STATE_NORMAL;
+	}
+
+	private static State stateFor(ChessGame game, int code, String reason) throws IOException {
+		switch (code) {
+			case STATE_NORMAL:
+				// The routing shim is never entered on restore; pick the side's state directly
+				return game.isWhiteToMove() ? new NormalPlayWhiteState(game) : new NormalPlayBlackState(game);
+			case STATE_WHITE:
+				return new NormalPlayWhiteState(game);
+			case STATE_BLACK:
+				return new NormalPlayBlackState(game);
+			case STATE_CHECK:
+				return new CheckState(game);
+			case STATE_GAME_OVER:
+				return new GameOverState(game, reason);
+			default:
+				throw new IOException("Corrupt snapshot: state code " + code);
+		}
+	}
+
+	private static int pieceCode(Piece p) {
+		if (p == null) {
+			return 0;
+		}
+		int code = PIECE_CODES.indexOf(Character.toUpperCase(p.symbol()));
+		return Character.isUpperCase(p.symbol()) ? code : code | 8;
+	}
+
+	private static Piece pieceFor(int code, int sq) throws IOException {
+		int index = code & 7;
+		if (index == 0 || index >= PIECE_CODES.length()) {
+			throw new IOException("Corrupt snapshot: piece code " + code);
+		}
+		char symbol = PIECE_CODES.charAt(index);
+		return Piece.create((code & 8) != 0 ? Character.toLowerCase(symbol) : symbol, sq >> 3, sq & 7);
+	}
+}
@@ -0,0 +1,305 @@
+package main;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import metrics.LatencyHistogram;
+import pieces.Logic;
+import states.Command;
+import states.GameOverState;
+
+/**
+ * Drives many simulated clients through {@link SessionHost} to measure the
+ * whole command path (parsing, the per-game lock, the current state's
+ * {@code handleCommand}, the rules and any state transitions) under
+ * sustained load.
+ *
+ * Each client owns one session and sends commands one after another
+ * (closed loop, no think time). Every command is drawn from a weighted mix:
+ * a random legal move, a move that is not legal, {@code show},
+ * {@code reset} or {@code resign}. A client whose game has no legal move
+ * left (mate, stalemate or after resigning) sends {@code reset} instead of
+ * a move, as a player starting a new game would. Clients are spread over a
+ * fixed pool of threads; one client is only ever driven by one thread.
+ *
+ * The latency of each {@link SessionHost#submit} call is recorded per
+ * command kind and per state the game was in, after a warm-up period whose
+ * results are discarded. Console output of the games is discarded so that
+ * it does not dominate the measurements.
+ *
+ * Usage:
+ * {@code java -cp bin main.LoadGenerator [clients=64] [threads=<cores>] [seconds=10] [warmup=3] [seed=1]
+ * [legal=70] [illegal=10] [show=10] [reset=5] [resign=5]}
+ */
+public class LoadGenerator {
+
+	/** Kinds of command in the mix, in report order. */
+	public enum Kind {
+		LEGAL, ILLEGAL, SHOW, RESET, RESIGN
+	}
+
+	private final int clients;
+	private final int threads;
+	private final long seed;
+	private final int[] weights;
+	private final int totalWeight;
+
+	private final SessionHost host = new SessionHost();
+	private final LatencyHistogram[] byKind = new LatencyHistogram[Kind.values().length];
+	private final Map<String, LatencyHistogram> byState = new ConcurrentHashMap<>();
+	private final LatencyHistogram all = new LatencyHistogram("all");
+	private volatile boolean stopped;
+	private volatile long measuredNanos;
+
+	/**
+	 * @param clients number of simulated clients (sessions)
+	 * @param threads worker threads driving them
+	 * @param seed    seed of the clients' random choices
+	 * @param weights relative frequency of each {@link Kind}, in enum order
+	 */
+	public LoadGenerator(int clients, int threads, long seed, int[] weights) {
+		if (weights.length != Kind.values().length) {
+			throw new IllegalArgumentException("Expected " + Kind.values().length + " weights");
+		}
+		this.clients = clients;
+		this.threads = Math.min(threads, clients);
+		this.seed = seed;
+		this.weights = weights.clone();
+		int total = 0;
+		for (int w : weights) {
+			if (w < 0) {
+				throw new IllegalArgumentException("Negative weight: " + w);
+			}
+			total += w;
+		}
+		if (total == 0) {
+			throw new IllegalArgumentException("The command mix is empty");
+		}
+		this.totalWeight = total;
+		for (Kind k : Kind.values()) {
+			byKind[k.ordinal()] = new LatencyHistogram(k.name().toLowerCase());
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		Map<String, String> opt = new HashMap<>();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq > 0) {
+				opt.put(arg.substring(0, eq), arg.substring(eq + 1));
+			}
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+		LoadGenerator load = new LoadGenerator(
+				Integer.parseInt(opt.getOrDefault("clients", "64")),
+				Integer.parseInt(opt.getOrDefault("threads", String.valueOf(cores))),
+				Long.parseLong(opt.getOrDefault("seed", "1")),
+				new int[] {
+						Integer.parseInt(opt.getOrDefault("legal", "70")),
+						Integer.parseInt(opt.getOrDefault("illegal", "10")),
+						Integer.parseInt(opt.getOrDefault("show", "10")),
+						Integer.parseInt(opt.getOrDefault("reset", "5")),
+						Integer.parseInt(opt.getOrDefault("resign", "5")) });
+		double seconds = Double.parseDouble(opt.getOrDefault("seconds", "10"));
+		double warmup = Double.parseDouble(opt.getOrDefault("warmup", "3"));
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			load.run(warmup, seconds);
+		} finally {
+			System.setOut(console);
+		}
+		console.print(load.report());
+	}
+
+	/**
+	 * Opens the sessions, runs the clients for the warm-up period, clears the
+	 * results, then measures for {@code seconds} and stops the clients.
+	 *
+	 * @param warmup  seconds of load whose results are discarded
+	 * @param seconds seconds of measured load
+	 */
+	public void run(double warmup, double seconds) throws InterruptedException {
+		for (int id = 0; id < clients; id++) {
+			host.open(id);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			int first = t;
+			pool.execute(() -> {
+				try {
+					drive(first);
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		pool.shutdown();
+
+		Thread.sleep((long) (warmup * 1000));
+		clear();
+		long start = System.nanoTime();
+		Thread.sleep((long) (seconds * 1000));
+		stopped = true;
+		done.await();
+		measuredNanos = System.nanoTime() - start;
+		pool.awaitTermination(1, TimeUnit.MINUTES);
+	}
+
+	private void clear() {
+		for (LatencyHistogram h : byKind) {
+			h.reset();
+		}
+		for (LatencyHistogram h : byState.values()) {
+			h.reset();
+		}
+		all.reset();
+	}
+
+	/**
+	 * Runs the clients {@code first}, {@code first + threads}, ... in turn,
+	 * one command each, until stopped.
+	 */
+	private void drive(int first) {
+		int count = (clients - first + threads - 1) / threads;
+		Client[] mine = new Client[count];
+		for (int i = 0; i < count; i++) {
+			int id = first + i * threads;
+			mine[i] = new Client(id, new Random(seed * 31 + id));
+		}
+		while (!stopped) {
+			for (Client c : mine) {
+				c.step();
+			}
+		}
+	}
+
+	/** One simulated player: a session, its random choices and a move buffer. */
+	private final class Client {
+		private final long id;
+		private final ChessGame game;
+		private final Random random;
+		private final int[] moves = new int[Logic.MAX_MOVES];
+
+		Client(long id, Random random) {
+			this.id = id;
+			this.game = host.get(id);
+			this.random = random;
+		}
+
+		/** Picks, sends and times one command. */
+		void step() {
+			Kind kind = pick();
+			String line;
+			String state;
+			// What the player sees before typing: not part of the measured path
+			synchronized (game) {
+				state = game.getState().name();
+				boolean over = game.getState() instanceof GameOverState;
+				int count = over || game.getBoard() == null ? 0
+						: Logic.legalMoves(game.getBoard(), game.isWhiteToMove() ? "WHITE" : "BLACK",
+								game.getCastlingRights(), game.getEpSquare(), moves);
+				if ((kind == Kind.LEGAL || kind == Kind.ILLEGAL) && count == 0) {
+					kind = Kind.RESET; // the game is over: start a new one
+				}
+				line = text(kind, count);
+			}
+
+			long start = System.nanoTime();
+			host.submit(id, line);
+			long nanos = System.nanoTime() - start;
+
+			byKind[kind.ordinal()].record(nanos);
+			byState.computeIfAbsent(state, LatencyHistogram::new).record(nanos);
+			all.record(nanos);
+		}
+
+		private Kind pick() {
+			int r = random.nextInt(totalWeight);
+			for (Kind k : Kind.values()) {
+				r -= weights[k.ordinal()];
+				if (r < 0) {
+					return k;
+				}
+			}
+			return Kind.SHOW;
+		}
+
+		/** The command line for a kind, given the {@code count} legal moves in the buffer. */
+		private String text(Kind kind, int count) {
+			switch (kind) {
+				case LEGAL: {
+					int move = moves[random.nextInt(count)];
+					return Command.move(Logic.from(move), Logic.to(move), Logic.promotion(move)).toString();
+				}
+				case ILLEGAL:
+					return illegalMove(count);
+				case SHOW:
+					return "show";
+				case RESET:
+					return "reset";
+				default:
+					return "resign";
+			}
+		}
+
+		/** A move between two random squares that is not among the legal ones. */
+		private String illegalMove(int count) {
+			while (true) {
+				int from = random.nextInt(64), to = random.nextInt(64);
+				boolean legal = false;
+				for (int i = 0; i < count && !legal; i++) {
+					legal = Logic.from(moves[i]) == from && Logic.to(moves[i]) == to;
+				}
+				if (!legal) {
+					return Command.move(from, to).toString();
+				}
+			}
+		}
+	}
+
+	/** Returns the results as text. */
+	public String report() {
+		double seconds = measuredNanos / 1e9;
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d clients on %d threads, %.1f s measured%n", clients, threads, seconds));
+		sb.append(String.format("Throughput: %.0f commands/s%n", all.count() / Math.max(seconds, 1e-9)));
+		sb.append("--- Latency per command (ns) ---\n");
+		header(sb);
+		for (LatencyHistogram h : byKind) {
+			row(sb, h, seconds);
+		}
+		row(sb, all, seconds);
+		sb.append("--- Latency per state before the command (ns) ---\n");
+		header(sb);
+		for (LatencyHistogram h : new TreeMap<>(byState).values()) {
+			row(sb, h, seconds);
+		}
+		return sb.toString();
+	}
+
+	private static void header(StringBuilder sb) {
+		sb.append(String.format("%-24s %10s %10s %10s %10s %10s %10s %12s %12s%n", "name", "count", "per s", "mean",
+				"p50", "p90", "p99", "p99.9", "max"));
+	}
+
+	private static void row(StringBuilder sb, LatencyHistogram h, double seconds) {
+		if (h.count() == 0) {
+			return;
+		}
+		sb.append(String.format("%-24s %10d %10.0f %10d %10d %10d %10d %12d %12d%n", h.name(), h.count(),
+				h.count() / Math.max(seconds, 1e-9), Math.round(h.mean()), h.percentile(50), h.percentile(90),
+				h.percentile(99), h.percentile(99.9), h.max()));
+	}
+}
@@ -0,0 +1,27 @@
+package main;
+
+/**
+ * Observer notified by a {@link ChessGame} about changes to its position,
+ * e.g. for durable move logging. Callbacks run on the thread playing the
+ * game, so implementations should be quick and must not block.
+ */
+public interface MoveListener {
+
+	/**
+	 * Called after a legal move has been played on the board (before the turn
+	 * is handed to the opponent).
+	 *
+	 * @param game the game the move was played in
+	 * @param move the move as {@code from | to << 6 | promotion << 12}, with
+	 *             squares numbered {@code row * 8 + col}
+	 */
+	void onMove(ChessGame game, int move);
+
+	/**
+	 * Called after the game has been reset to the starting position.
+	 *
+	 * @param game the game that was reset
+	 */
+	default void onReset(ChessGame game) {
+	}
+}
@@ -0,0 +1,450 @@
+package main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of the moves played in many games, with group
+ * commit: appends only copy a fixed-size record into an in-memory batch, and
+ * a single flusher thread writes each batch with one {@link FileChannel}
+ * write and one {@code force}, so many games' moves share one fsync.
+ *
+ * A batch is flushed when it holds {@code maxBatchRecords} records or when
+ * {@code commitInterval} has passed since its first record, whichever comes
+ * first. The log is split into segment files ({@code moves-<n>.wal}) that are
+ * rotated once they reach {@code segmentBytes}; each run starts a new
+ * segment, so a torn tail can only ever be at the end of a segment.
+ *
+ * Record layout (16 bytes, big-endian):
+ * <pre>
+ *   long game id
+ *   int  type &lt;&lt; 24 | move    (move = from | to &lt;&lt; 6 | promotion &lt;&lt; 12, 0 for a reset)
+ *   int  check                 hash of the two fields above
+ * </pre>
+ * A keyframe record ({@code type} 3, {@code move} = body length) carries a
+ * whole game in {@link GameSnapshot} form, e.g. for a session restored from
+ * a snapshot, whose start position predates the log. The header is
+ * followed by the body and its CRC-32, zero-padded to a multiple of 16
+ * bytes.
+ *
+ * {@link #recover(Path)} replays all segments into {@link ChessGame}
+ * instances. Resignations and other non-move state changes are not logged;
+ * recovered games resume in the state implied by their position.
+ */
+public class MoveLog implements Closeable {
+
+	static final int RECORD_BYTES = 16;
+	private static final int TYPE_RESET = 1;
+	private static final int TYPE_MOVE = 2;
+	private static final int TYPE_KEYFRAME = 3;
+	private static final String SEGMENT_PREFIX = "moves-";
+	private static final String SEGMENT_SUFFIX = ".wal";
+
+	private final Path dir;
+	private final long segmentBytes;
+	private final long commitIntervalNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition hasData = lock.newCondition();
+	private final Condition flushed = lock.newCondition();
+	// Appenders fill 'active' while the flusher writes 'flushing'; swapped per batch
+	private ByteBuffer active;
+	private ByteBuffer flushing;
+	private long appendedSeq;
+	private long durableSeq;
+	private boolean closed;
+	private IOException failure;
+	// Records the game listeners could not append after the log closed or failed
+	private final AtomicLong lostRecords = new AtomicLong();
+
+	// Only touched by the flusher thread after construction
+	private FileChannel channel;
+	private long segmentIndex;
+	private long segmentSize;
+	private final Thread flusher;
+
+	/**
+	 * Opens a log in {@code dir}, creating the directory if needed. Existing
+	 * segments are kept; new records go to a fresh segment.
+	 *
+	 * @param dir             directory holding the segment files
+	 * @param segmentBytes    size at which a segment is rotated
+	 * @param commitInterval  longest time a record waits for its batch to fill
+	 * @param unit            unit of {@code commitInterval}
+	 * @param maxBatchRecords records per batch; a full batch is flushed at once
+	 * @throws IOException if the directory or first segment cannot be created
+	 */
+	public MoveLog(Path dir, long segmentBytes, long commitInterval, TimeUnit unit, int maxBatchRecords)
+			throws IOException {
+		if (maxBatchRecords <= 0 || segmentBytes < RECORD_BYTES) {
+			throw new IllegalArgumentException("Batch and segment sizes must hold at least one record");
+		}
+		this.dir = Files.createDirectories(dir);
+		this.segmentBytes = segmentBytes;
+		this.commitIntervalNanos = unit.toNanos(commitInterval);
+		this.active = ByteBuffer.allocateDirect(maxBatchRecords * RECORD_BYTES);
+		this.flushing = ByteBuffer.allocateDirect(maxBatchRecords * RECORD_BYTES);
+
+		List<Path> existing = segments(dir);
+		segmentIndex = existing.isEmpty() ? 0 : segmentNumber(existing.get(existing.size() - 1));
+		openNextSegment();
+
+		flusher = new Thread(this::flushLoop, "move-log-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Returns a listener that logs every move and reset of one game.
+	 *
+	 * The listener runs inside the game's move, after the board has changed,
+	 * so it never throws: if the log has closed or failed, the record is
+	 * counted in {@link #lostRecords()} and the first loss is reported on
+	 * {@code System.err}, and the game carries on unlogged.
+	 *
+	 * @param gameId id under which the game's records are logged
+	 * @return listener to add with {@link ChessGame#addMoveListener}
+	 */
+	public MoveListener listenerFor(long gameId) {
+		return new MoveListener() {
+			@Override
+			public void onMove(ChessGame game, int move) {
+				try {
+					appendMove(gameId, move);
+				} catch (IllegalStateException e) {
+					lost(e);
+				}
+			}
+
+			@Override
+			public void onReset(ChessGame game) {
+				try {
+					appendReset(gameId);
+				} catch (IllegalStateException e) {
+					lost(e);
+				}
+			}
+		};
+	}
+
+	/** @return number of records game listeners could not log */
+	public long lostRecords() {
+		return lostRecords.get();
+	}
+
+	private void lost(IllegalStateException e) {
+		if (lostRecords.getAndIncrement() == 0) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			System.err.println("[MOVE LOG] Moves are no longer logged: " + cause.getMessage());
+		}
+	}
+
+	/**
+	 * Appends a move record. Returns once the record is in the current batch;
+	 * use {@link #awaitDurable} to wait for it to reach disk.
+	 *
+	 * @param move move as {@code from | to << 6 | promotion << 12}
+	 * @return sequence number of the record
+	 */
+	public long appendMove(long gameId, int move) {
+		return append(gameId, TYPE_MOVE << 24 | (move & 0x7FFF));
+	}
+
+	/**
+	 * Appends a record marking that a game was (re)set to the start position.
+	 *
+	 * @return sequence number of the record
+	 */
+	public long appendReset(long gameId) {
+		return append(gameId, TYPE_RESET << 24);
+	}
+
+	/**
+	 * Appends a keyframe holding the whole game, from which recovery
+	 * continues with the game's later moves.
+	 *
+	 * @param game the game, in its current state
+	 * @return sequence number of the record
+	 */
+	public long appendKeyframe(long gameId, ChessGame game) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			GameSnapshot.write(game, new DataOutputStream(bytes));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // not thrown by an in-memory stream
+		}
+		return append(gameId, TYPE_KEYFRAME << 24 | bytes.size(), bytes.toByteArray());
+	}
+
+	private long append(long gameId, int payload) {
+		return append(gameId, payload, null);
+	}
+
+	private long append(long gameId, int payload, byte[] body) {
+		int size = RECORD_BYTES + (body == null ? 0 : padded(body.length));
+		lock.lock();
+		try {
+			// Batch full and not yet swapped out by the flusher: wait for space
+			while (active.remaining() < size && active.position() > 0 && !closed && failure == null) {
+				flushed.awaitUninterruptibly();
+			}
+			if (closed) {
+				throw new IllegalStateException("Move log is closed");
+			}
+			if (failure != null) {
+				throw new IllegalStateException("Move log failed", failure);
+			}
+			if (active.remaining() < size) {
+				// A keyframe larger than an empty batch gets a batch of its own
+				active = ByteBuffer.allocateDirect(size);
+			}
+			boolean first = active.position() == 0;
+			active.putLong(gameId).putInt(payload).putInt(check(gameId, payload));
+			if (body != null) {
+				CRC32 crc = new CRC32();
+				crc.update(body);
+				active.put(body).putInt((int) crc.getValue());
+				active.put(new byte[padded(body.length) - body.length - 4]);
+			}
+			if (first || !active.hasRemaining()) {
+				hasData.signal(); // first record starts the commit timer; a full batch flushes now
+			}
+			return ++appendedSeq;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Bytes a keyframe body and its CRC take after the header. */
+	private static int padded(int bodyLength) {
+		return (bodyLength + 4 + RECORD_BYTES - 1) / RECORD_BYTES * RECORD_BYTES;
+	}
+
+	/**
+	 * Blocks until the record with the given sequence number has been forced
+	 * to disk.
+	 *
+	 * @param seq sequence number returned by an append
+	 * @throws IOException if the log failed before the record was written
+	 */
+	public void awaitDurable(long seq) throws IOException {
+		lock.lock();
+		try {
+			while (durableSeq < seq && failure == null) {
+				flushed.awaitUninterruptibly();
+			}
+			if (durableSeq < seq) {
+				throw new IOException("Move log failed", failure);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Flushes pending records, stops the flusher and closes the current
+	 * segment.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			closed = true;
+			hasData.signalAll();
+			flushed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void flushLoop() {
+		while (true) {
+			long batchSeq;
+			lock.lock();
+			try {
+				while (active.position() == 0 && !closed) {
+					hasData.awaitUninterruptibly();
+				}
+				if (active.position() == 0) {
+					return; // closed and drained
+				}
+				// Group commit: give other games until the deadline to join this batch
+				long deadline = System.nanoTime() + commitIntervalNanos;
+				long left;
+				while (active.hasRemaining() && !closed && (left = deadline - System.nanoTime()) > 0) {
+					try {
+						hasData.awaitNanos(left);
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+				ByteBuffer full = active;
+				active = flushing;
+				flushing = full;
+				batchSeq = appendedSeq;
+				flushed.signalAll(); // appenders blocked on a full batch can continue
+			} finally {
+				lock.unlock();
+			}
+
+			IOException error = null;
+			try {
+				writeBatch(flushing);
+			} catch (IOException e) {
+				error = e;
+			}
+
+			lock.lock();
+			try {
+				if (error != null) {
+					failure = error;
+				} else {
+					durableSeq = batchSeq;
+				}
+				flushed.signalAll();
+				if (error != null) {
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void writeBatch(ByteBuffer batch) throws IOException {
+		batch.flip();
+		if (segmentSize > 0 && segmentSize + batch.remaining() > segmentBytes) {
+			channel.force(false);
+			channel.close();
+			openNextSegment();
+		}
+		while (batch.hasRemaining()) {
+			segmentSize += channel.write(batch);
+		}
+		channel.force(false);
+		batch.clear();
+	}
+
+	private void openNextSegment() throws IOException {
+		segmentIndex++;
+		Path file = dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+		channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		segmentSize = 0;
+	}
+
+	/**
+	 * Replays every segment in {@code dir} into fresh games. A reset record
+	 * starts a new game for its id, a keyframe restores one; move records
+	 * are played on it in order. Reading a segment stops at the first torn
+	 * or corrupt record.
+	 *
+	 * @param dir log directory
+	 * @return recovered games by id, in order of their last reset
+	 * @throws IOException if a segment cannot be read
+	 */
+	public static Map<Long, ChessGame> recover(Path dir) throws IOException {
+		Map<Long, ChessGame> games = new LinkedHashMap<>();
+		if (!Files.isDirectory(dir)) {
+			return games;
+		}
+		for (Path segment : segments(dir)) {
+			ByteBuffer buf;
+			try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+				buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			}
+			while (buf.remaining() >= RECORD_BYTES) {
+				long gameId = buf.getLong();
+				int payload = buf.getInt();
+				if (buf.getInt() != check(gameId, payload)) {
+					break;
+				}
+				int type = payload >>> 24;
+				if (type == TYPE_RESET) {
+					ChessGame game = new ChessGame();
+					game.resetPosition();
+					games.remove(gameId);
+					games.put(gameId, game);
+				} else if (type == TYPE_KEYFRAME) {
+					int length = payload & 0xFFFFFF;
+					if (buf.remaining() < padded(length)) {
+						break;
+					}
+					byte[] body = new byte[length];
+					buf.get(body);
+					CRC32 crc = new CRC32();
+					crc.update(body);
+					if (buf.getInt() != (int) crc.getValue()) {
+						break;
+					}
+					buf.position(buf.position() + padded(length) - length - 4);
+					games.remove(gameId);
+					games.put(gameId, GameSnapshot.read(new DataInputStream(new ByteArrayInputStream(body))));
+				} else if (type == TYPE_MOVE) {
+					ChessGame game = games.get(gameId);
+					// Moves of games whose reset predates the log cannot be replayed
+					if (game != null && game.tryMove(payload & 63, (payload >> 6) & 63, (payload >> 12) & 7)) {
+						game.toggleTurn();
+					}
+				}
+			}
+		}
+		for (ChessGame game : games.values()) {
+			game.restorePlayState();
+		}
+		return games;
+	}
+
+	private static List<Path> segments(Path dir) throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path p : ds) {
+				files.add(p);
+			}
+		}
+		Collections.sort(files); // zero-padded numbers sort lexically
+		return files;
+	}
+
+	private static long segmentNumber(Path segment) {
+		String name = segment.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	/** Cheap 32-bit mix of a record's fields, to detect torn writes. */
+	private static int check(long gameId, int payload) {
+		long h = (gameId ^ ((long) payload << 32 | payload & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		return (int) (h ^ h >>> 32);
+	}
+}
@@ -0,0 +1,431 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pieces.Logic;
+
+/**
+ * Counts how often positions occur in a game archive, and how the games
+ * that reached them ended.
+ *
+ * The index is an open-addressing hash table (linear probing) of fixed
+ * capacity that lives entirely in a memory-mapped file, so it is persisted
+ * as it is built and takes no heap however many positions it holds. Slots
+ * are claimed with a compare-and-set on the key and counters are bumped with
+ * atomic adds, so any number of threads can insert at once without locks.
+ *
+ * File layout (little-endian):
+ * <pre>
+ *   header (64 bytes)  int magic, int version, long capacity, long size
+ *   slots  (32 bytes)  long key, int occurrences, int games,
+ *                      int white wins, int draws, int black wins, int unused
+ * </pre>
+ * Keys are {@link ChessGame#getPositionKey()} Zobrist keys; 0 marks an empty
+ * slot, so a position whose key is 0 is stored under 1. The capacity is a
+ * power of two fixed at creation; keep it about twice the number of
+ * distinct positions expected.
+ *
+ * Usage:
+ * {@code java -cp bin main.PositionIndex build <corpus> <index> [capacity=2^24] [threads=<cores>]}
+ * or {@code java -cp bin main.PositionIndex query <index> <fen>}
+ */
+public class PositionIndex implements Closeable {
+
+	private static final int MAGIC = 0x43485049; // "CHPI"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 64;
+	private static final int SLOT_SHIFT = 5; // 32-byte slots
+	// At most 2^25 slots (1 GiB) per mapping; a mapped buffer is int-indexed
+	private static final int MAX_CHUNK_SHIFT = 25;
+	private static final int BATCH_LINES = 256;
+
+	private static final int OCCURRENCES = 8, GAMES = 12, WHITE_WINS = 16, DRAWS = 20, BLACK_WINS = 24;
+
+	private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/** Game results as counted per position. */
+	public static final int WHITE_WIN = 0, DRAW = 1, BLACK_WIN = 2, UNKNOWN = 3;
+
+	/**
+	 * What the index knows about one position.
+	 *
+	 * @param occurrences times the position occurred, repetitions included
+	 * @param games       games that reached it at least once
+	 */
+	public record Entry(long key, int occurrences, int games, int whiteWins, int draws, int blackWins) {
+	}
+
+	/**
+	 * Totals of a {@link #build} run.
+	 *
+	 * @param games     games indexed
+	 * @param skipped   lines skipped because of an illegal or unreadable move
+	 * @param positions positions indexed, repetitions included
+	 */
+	public record BuildStats(long games, long skipped, long positions) {
+	}
+
+	private final FileChannel channel;
+	private final boolean writable;
+	private final long capacity;
+	private final long mask;
+	private final int chunkShift;
+	private final long chunkMask;
+	private final MappedByteBuffer header;
+	private final MappedByteBuffer[] chunks;
+	private final AtomicLong size;
+
+	private PositionIndex(FileChannel channel, boolean writable, long capacity, long size) throws IOException {
+		this.channel = channel;
+		this.writable = writable;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.chunkShift = Math.min(MAX_CHUNK_SHIFT, Long.numberOfTrailingZeros(capacity));
+		this.chunkMask = (1L << chunkShift) - 1;
+		this.size = new AtomicLong(size);
+		FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+		this.header = channel.map(mode, 0, HEADER_BYTES);
+		this.chunks = new MappedByteBuffer[(int) (capacity >>> chunkShift)];
+		long chunkBytes = (1L << chunkShift) << SLOT_SHIFT;
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = channel.map(mode, HEADER_BYTES + i * chunkBytes, chunkBytes);
+		}
+	}
+
+	/**
+	 * Creates an empty index file. The file is sparse until slots are used.
+	 *
+	 * @param file     index file; must not exist
+	 * @param capacity number of slots, a power of two
+	 * @return the index, open for inserts and queries
+	 * @throws IOException if the file exists or cannot be mapped
+	 */
+	public static PositionIndex create(Path file, long capacity) throws IOException {
+		if (capacity < 2 || Long.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		PositionIndex index = new PositionIndex(ch, true, capacity, 0);
+		index.header.order(ByteOrder.LITTLE_ENDIAN).putInt(0, MAGIC).putInt(4, VERSION).putLong(8, capacity);
+		return index;
+	}
+
+	/**
+	 * Opens an existing index file.
+	 *
+	 * @param file     index file written by {@link #create}
+	 * @param writable {@code true} to allow further inserts
+	 * @return the index
+	 * @throws IOException if the file cannot be read or is not an index
+	 */
+	public static PositionIndex open(Path file, boolean writable) throws IOException {
+		FileChannel ch = writable
+				? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(file, StandardOpenOption.READ);
+		ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		while (head.hasRemaining() && ch.read(head) >= 0) {
+			// read the whole header
+		}
+		long capacity = head.getLong(8);
+		if (head.hasRemaining() || head.getInt(0) != MAGIC || head.getInt(4) != VERSION || capacity < 2
+				|| Long.bitCount(capacity) != 1) {
+			ch.close();
+			throw new IOException("Not a position index: " + file);
+		}
+		return new PositionIndex(ch, writable, capacity, head.getLong(16));
+	}
+
+	/** @return number of slots */
+	public long capacity() {
+		return capacity;
+	}
+
+	/** @return number of distinct positions stored */
+	public long size() {
+		return size.get();
+	}
+
+	/**
+	 * Adds a position's occurrences in one game. Safe to call from many
+	 * threads at once.
+	 *
+	 * @param key         position key
+	 * @param occurrences times the position occurred in the game
+	 * @param result      {@link #WHITE_WIN}, {@link #DRAW}, {@link #BLACK_WIN} or
+	 *                    {@link #UNKNOWN}
+	 * @throws IllegalStateException if the index is read-only or full
+	 */
+	public void add(long key, int occurrences, int result) {
+		if (!writable) {
+			throw new IllegalStateException("Position index is read-only");
+		}
+		key = key == 0 ? 1 : key;
+		long slot = home(key);
+		for (long probes = 0; probes < capacity; probes++, slot = (slot + 1) & mask) {
+			ByteBuffer chunk = chunks[(int) (slot >>> chunkShift)];
+			int at = (int) (slot & chunkMask) << SLOT_SHIFT;
+			long k = (long) LONG.getAcquire(chunk, at);
+			if (k == 0) {
+				k = (long) LONG.compareAndExchange(chunk, at, 0L, key);
+				if (k == 0) {
+					size.incrementAndGet();
+					k = key;
+				}
+			}
+			if (k == key) {
+				INT.getAndAdd(chunk, at + OCCURRENCES, occurrences);
+				INT.getAndAdd(chunk, at + GAMES, 1);
+				if (result != UNKNOWN) {
+					INT.getAndAdd(chunk, at + WHITE_WINS + 4 * result, 1);
+				}
+				return;
+			}
+		}
+		throw new IllegalStateException("Position index is full (" + capacity + " slots)");
+	}
+
+	/**
+	 * Looks up a position.
+	 *
+	 * @param key position key, e.g. {@link ChessGame#getPositionKey()}
+	 * @return its counts, or {@code null} if it never occurred
+	 */
+	public Entry get(long key) {
+		key = key == 0 ? 1 : key;
+		long slot = home(key);
+		for (long probes = 0; probes < capacity; probes++, slot = (slot + 1) & mask) {
+			ByteBuffer chunk = chunks[(int) (slot >>> chunkShift)];
+			int at = (int) (slot & chunkMask) << SLOT_SHIFT;
+			long k = (long) LONG.getAcquire(chunk, at);
+			if (k == 0) {
+				return null;
+			}
+			if (k == key) {
+				return new Entry(key, (int) INT.getVolatile(chunk, at + OCCURRENCES),
+						(int) INT.getVolatile(chunk, at + GAMES), (int) INT.getVolatile(chunk, at + WHITE_WINS),
+						(int) INT.getVolatile(chunk, at + DRAWS), (int) INT.getVolatile(chunk, at + BLACK_WINS));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes the size to the header and forces all changes to disk.
+	 */
+	public void force() {
+		if (writable) {
+			header.order(ByteOrder.LITTLE_ENDIAN).putLong(16, size.get());
+			header.force();
+			for (MappedByteBuffer chunk : chunks) {
+				chunk.force();
+			}
+		}
+	}
+
+	/**
+	 * Forces changes to disk and closes the file. The mappings stay valid
+	 * until they are garbage collected, but must not be used.
+	 */
+	@Override
+	public void close() throws IOException {
+		force();
+		channel.close();
+	}
+
+	/** Home slot of a key; Zobrist keys are random, but mixing guards other hashes. */
+	private long home(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (h ^ h >>> 32) & mask;
+	}
+
+	// -- Building from a corpus --
+
+	/**
+	 * Indexes every game of a text corpus: one game per line, as coordinate
+	 * moves ({@code e2e4}, {@code e7e8q}) from the starting position, optionally
+	 * followed by a result token ({@code 1-0}, {@code 0-1}, {@code 1/2-1/2} or
+	 * {@code *}). Lines are read by the calling thread and replayed in batches
+	 * by {@code threads} workers, each with its own {@link ChessGame}. A line
+	 * with an illegal move is skipped entirely.
+	 *
+	 * @param corpus  corpus file
+	 * @param threads number of replaying threads
+	 * @return totals of the run
+	 * @throws IOException if the corpus cannot be read
+	 */
+	public BuildStats build(Path corpus, int threads) throws IOException {
+		AtomicLong games = new AtomicLong();
+		AtomicLong skipped = new AtomicLong();
+		AtomicLong positions = new AtomicLong();
+		ThreadLocal<Importer> importers = ThreadLocal.withInitial(Importer::new);
+		// A full queue makes the reader replay a batch itself, bounding memory
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+		try (BufferedReader in = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+			List<String> batch = new ArrayList<>(BATCH_LINES);
+			String line;
+			while ((line = in.readLine()) != null) {
+				batch.add(line);
+				if (batch.size() == BATCH_LINES) {
+					submit(pool, importers, batch, games, skipped, positions);
+					batch = new ArrayList<>(BATCH_LINES);
+				}
+			}
+			submit(pool, importers, batch, games, skipped, positions);
+		} finally {
+			pool.shutdown();
+			try {
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		force();
+		return new BuildStats(games.get(), skipped.get(), positions.get());
+	}
+
+	private void submit(ThreadPoolExecutor pool, ThreadLocal<Importer> importers, List<String> batch,
+			AtomicLong games, AtomicLong skipped, AtomicLong positions) {
+		pool.execute(() -> {
+			Importer importer = importers.get();
+			long g = 0, s = 0, p = 0;
+			for (String line : batch) {
+				int n = importer.replay(line);
+				if (n > 0) {
+					g++;
+					p += n;
+				} else if (n < 0) {
+					s++;
+				}
+			}
+			games.addAndGet(g);
+			skipped.addAndGet(s);
+			positions.addAndGet(p);
+		});
+	}
+
+	/** One thread's game and key buffer, reused for every line it replays. */
+	private final class Importer {
+		private final ChessGame game = new ChessGame();
+		private long[] keys = new long[256];
+
+		/** @return positions indexed, 0 for a blank line, -1 if the line was skipped */
+		int replay(String line) {
+			String[] tokens = line.trim().split("\\s+");
+			if (tokens.length == 0 || tokens[0].isEmpty()) {
+				return 0;
+			}
+			int result = switch (tokens[tokens.length - 1]) {
+				case "1-0" -> WHITE_WIN;
+				case "0-1" -> BLACK_WIN;
+				case "1/2-1/2" -> DRAW;
+				default -> UNKNOWN;
+			};
+			boolean hasResult = result != UNKNOWN || tokens[tokens.length - 1].equals("*");
+			int moveTokens = hasResult ? tokens.length - 1 : tokens.length;
+
+			game.resetPosition();
+			int n = 0;
+			keys[n++] = game.getPositionKey();
+			for (int i = 0; i < moveTokens; i++) {
+				int move = parseMove(tokens[i]);
+				String color = game.isWhiteToMove() ? "WHITE" : "BLACK";
+				// Checked first so that a bad archive line does not print a game log message
+				if (move < 0 || !Logic.isLegal(game.getBoard(), move, game.getCastlingRights(),
+						game.getEpSquare(), color)) {
+					return -1;
+				}
+				game.tryMove(Logic.from(move), Logic.to(move), Logic.promotion(move));
+				game.toggleTurn();
+				if (n == keys.length) {
+					keys = Arrays.copyOf(keys, n * 2);
+				}
+				keys[n++] = game.getPositionKey();
+			}
+
+			// Each distinct position once per game, with its number of occurrences
+			Arrays.sort(keys, 0, n);
+			for (int i = 0; i < n;) {
+				int j = i + 1;
+				while (j < n && keys[j] == keys[i]) {
+					j++;
+				}
+				add(keys[i], j - i, result);
+				i = j;
+			}
+			return n;
+		}
+	}
+
+	/** "e2e4" / "e7e8q" -> encoded move, or -1. */
+	private static int parseMove(String token) {
+		if (token.length() != 4 && token.length() != 5) {
+			return -1;
+		}
+		int from = square(token, 0), to = square(token, 2);
+		int promotion = token.length() == 5 ? Logic.promotionCode(token.charAt(4)) : Logic.PROMO_NONE;
+		return from < 0 || to < 0 || promotion < 0 ? -1 : Logic.move(from, to, promotion);
+	}
+
+	private static int square(String s, int i) {
+		int file = s.charAt(i) - 'a', rank = s.charAt(i + 1) - '1';
+		return file < 0 || file > 7 || rank < 0 || rank > 7 ? -1 : (7 - rank) * 8 + file;
+	}
+
+	// -- Command line --
+
+	public static void main(String[] args) throws IOException {
+		if (args.length >= 3 && args[0].equals("build")) {
+			long capacity = args.length > 3 ? Long.parseLong(args[3]) : 1L << 24;
+			int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+			try (PositionIndex index = create(Path.of(args[2]), capacity)) {
+				long start = System.nanoTime();
+				BuildStats stats = index.build(Path.of(args[1]), threads);
+				double secs = (System.nanoTime() - start) / 1e9;
+				System.out.printf("Indexed %d games (%d skipped), %d positions, %d distinct in %.1f s (%.0f positions/s)%n",
+						stats.games(), stats.skipped(), stats.positions(), index.size(), secs,
+						stats.positions() / secs);
+			}
+		} else if (args.length >= 3 && args[0].equals("query")) {
+			ChessGame game = new ChessGame();
+			game.loadFen(String.join(" ", Arrays.copyOfRange(args, 2, args.length)));
+			try (PositionIndex index = open(Path.of(args[1]), false)) {
+				long start = System.nanoTime();
+				Entry e = index.get(game.getPositionKey());
+				long nanos = System.nanoTime() - start;
+				if (e == null) {
+					System.out.println("Position not in index.");
+				} else {
+					System.out.printf("%d games (%d occurrences): white wins %d, draws %d, black wins %d%n",
+							e.games(), e.occurrences(), e.whiteWins(), e.draws(), e.blackWins());
+				}
+				System.out.printf("Lookup took %.1f us%n", nanos / 1e3);
+			}
+		} else {
+			System.out.println("Usage: PositionIndex build <corpus> <index> [capacity] [threads]");
+			System.out.println("       PositionIndex query <index> <fen>");
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package main;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import states.Command;
+import states.GameStartState;
+
+/**
+ * Replays a recorded command stream (one command per line, as written by
+ * {@code ChessDriver --record <file>}) against a fresh game and reports
+ * where the time went: per state, the time spent handling commands while in
+ * that state; per transition, the time spent in {@code exit()} and
+ * {@code enter()}, plus the longest transition chain.
+ *
+ * Console output of the game is discarded during the replay so that it does
+ * not dominate the measurements.
+ *
+ * Usage: {@code java -cp bin main.ReplayProfiler <commands-file> [repeat]}
+ */
+public class ReplayProfiler {
+
+	/** Accumulated calls and time for one row of the report. */
+	private static final class Stat {
+		long calls;
+		long nanos;
+		long maxNanos;
+
+		void add(long n) {
+			calls++;
+			nanos += n;
+			maxNanos = Math.max(maxNanos, n);
+		}
+	}
+
+	private final Map<String, Stat> byState = new TreeMap<>();
+	private final Map<String, Stat> byTransition = new TreeMap<>();
+	private int longestChain;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: ReplayProfiler <commands-file> [repeat]");
+			return;
+		}
+		List<String> lines = Files.readAllLines(Paths.get(args[0]));
+		int repeat = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+		ReplayProfiler profiler = new ReplayProfiler();
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			for (int i = 0; i < repeat; i++) {
+				profiler.replay(lines);
+			}
+		} finally {
+			System.setOut(console);
+		}
+		console.print(profiler.report());
+	}
+
+	/**
+	 * Replays one command stream against a new game.
+	 *
+	 * @param lines recorded commands; "quit"/"exit" ends the replay
+	 */
+	public void replay(List<String> lines) {
+		ChessGame game = new ChessGame();
+		TransitionTracer tracer = new TransitionTracer(1024);
+		game.setTracer(tracer);
+		game.setState(new GameStartState(game));
+		long seen = collect(tracer, 0);
+
+		for (String line : lines) {
+			Command cmd = Command.parse(line);
+			if (cmd.type() == Command.Type.QUIT) {
+				break;
+			}
+			String state = game.getState().name();
+			long start = System.nanoTime();
+			game.getState().handleCommand(cmd);
+			stat(byState, state).add(System.nanoTime() - start);
+			seen = collect(tracer, seen);
+		}
+		longestChain = Math.max(longestChain, tracer.longestChain());
+	}
+
+	/** Adds transitions recorded since {@code seen} to the report. */
+	private long collect(TransitionTracer tracer, long seen) {
+		for (long seq = Math.max(seen, tracer.oldest()); seq < tracer.count(); seq++) {
+			TransitionTracer.Event e = tracer.get(seq);
+			String from = e.from() == null ? "(none)" : e.from().getSimpleName();
+			stat(byTransition, from + " -> " + e.to().getSimpleName()).add(e.durationNanos());
+		}
+		return tracer.count();
+	}
+
+	/** Returns the report as text. */
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("--- Time per state (command handling) ---\n");
+		table(sb, byState);
+		sb.append("--- Time per transition (exit + enter) ---\n");
+		table(sb, byTransition);
+		sb.append("Longest transition chain: ").append(longestChain).append('\n');
+		return sb.toString();
+	}
+
+	private static void table(StringBuilder sb, Map<String, Stat> stats) {
+		sb.append(String.format("%-50s %10s %12s %12s %12s%n", "name", "calls", "total us", "mean ns", "max ns"));
+		for (Map.Entry<String, Stat> e : stats.entrySet()) {
+			Stat s = e.getValue();
+			sb.append(String.format("%-50s %10d %12d %12d %12d%n", e.getKey(), s.calls, s.nanos / 1000,
+					s.nanos / s.calls, s.maxNanos));
+		}
+	}
+
+	private static Stat stat(Map<String, Stat> map, String key) {
+		return map.computeIfAbsent(key, k -> new Stat());
+	}
+}
@@ -0,0 +1,257 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import states.Command;
+import states.GameStartState;
+
+/**
+ * Hosts many concurrent {@link ChessGame} sessions keyed by id, and can save
+ * all of them to a single snapshot file (on demand or periodically) and
+ * restore them after a restart without replaying any moves.
+ *
+ * Commands for one game are serialized by locking that game; different games
+ * run in parallel.
+ */
+public class SessionHost {
+
+	private static final int SNAPSHOT_MAGIC = 0x43485353; // "CHSS"
+	private static final int IO_BUFFER = 1 << 16;
+	private static final int BROADCAST_CAPACITY = 256;
+
+	private final Map<Long, ChessGame> games = new ConcurrentHashMap<>();
+	private final Map<Long, GameBroadcast> broadcasts = new ConcurrentHashMap<>();
+	private volatile MoveLog moveLog;
+	private ScheduledExecutorService snapshotter;
+	private ScheduledFuture<?> snapshotTask;
+
+	/**
+	 * Opens a new game session and runs it through {@link GameStartState}.
+	 *
+	 * @param id session id
+	 * @return the new game
+	 * @throws IllegalStateException if the id is already in use
+	 */
+	public ChessGame open(long id) {
+		ChessGame game = new ChessGame();
+		if (games.putIfAbsent(id, game) != null) {
+			throw new IllegalStateException("Session " + id + " already exists");
+		}
+		MoveLog log = moveLog;
+		if (log != null) {
+			game.addMoveListener(log.listenerFor(id));
+		}
+		synchronized (game) {
+			game.setState(new GameStartState(game));
+		}
+		return game;
+	}
+
+	/**
+	 * Logs every move and reset of sessions opened or recovered from now on
+	 * to {@code log}.
+	 *
+	 * @param log write-ahead move log
+	 */
+	public void setMoveLog(MoveLog log) {
+		this.moveLog = log;
+	}
+
+	/**
+	 * Replays a move log directory into this host, replacing any live session
+	 * with the same id. If a move log is set, recovered sessions keep logging
+	 * to it.
+	 *
+	 * @param dir move log directory
+	 * @return number of sessions recovered
+	 * @throws IOException if a segment cannot be read
+	 */
+	public int recover(Path dir) throws IOException {
+		Map<Long, ChessGame> recovered = MoveLog.recover(dir);
+		MoveLog log = moveLog;
+		for (Map.Entry<Long, ChessGame> e : recovered.entrySet()) {
+			if (log != null) {
+				e.getValue().addMoveListener(log.listenerFor(e.getKey()));
+			}
+			games.put(e.getKey(), e.getValue());
+			broadcasts.remove(e.getKey());
+		}
+		return recovered.size();
+	}
+
+	/** Returns the game for a session id, or {@code null}. */
+	public ChessGame get(long id) {
+		return games.get(id);
+	}
+
+	/** Closes a session, returning its game (or {@code null}). */
+	public ChessGame close(long id) {
+		broadcasts.remove(id);
+		return games.remove(id);
+	}
+
+	/**
+	 * Returns the spectator broadcast of a session, attaching one to the game
+	 * on first use. Spectators subscribe to it and poll for move deltas.
+	 *
+	 * @param id session id
+	 * @return the broadcast, or {@code null} if there is no such session
+	 */
+	public GameBroadcast broadcast(long id) {
+		ChessGame game = games.get(id);
+		if (game == null) {
+			return null;
+		}
+		return broadcasts.computeIfAbsent(id, k -> {
+			// Listeners are added and notified under the game's lock
+			synchronized (game) {
+				GameBroadcast b = new GameBroadcast(game, BROADCAST_CAPACITY);
+				game.addMoveListener(b);
+				return b;
+			}
+		});
+	}
+
+	/** Returns the number of live sessions. */
+	public int size() {
+		return games.size();
+	}
+
+	/**
+	 * Parses a raw input line and passes it to a session's current state.
+	 *
+	 * @param id   session id
+	 * @param line raw command line
+	 * @return {@code false} if there is no such session
+	 */
+	public boolean submit(long id, String line) {
+		return submit(id, Command.parse(line));
+	}
+
+	/**
+	 * Passes one parsed command to a session's current state.
+	 *
+	 * @param id  session id
+	 * @param cmd parsed command
+	 * @return {@code false} if there is no such session
+	 */
+	public boolean submit(long id, Command cmd) {
+		ChessGame game = games.get(id);
+		if (game == null) {
+			return false;
+		}
+		synchronized (game) {
+			game.getState().handleCommand(cmd);
+		}
+		return true;
+	}
+
+	/**
+	 * Writes every live session to {@code file}. The snapshot is written to a
+	 * temporary file first and moved into place, so a crash mid-write leaves
+	 * the previous snapshot intact.
+	 *
+	 * @param file snapshot file
+	 * @return number of sessions written
+	 * @throws IOException if writing fails
+	 */
+	public int writeSnapshot(Path file) throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		int count = 0;
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(tmp), IO_BUFFER))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			for (Map.Entry<Long, ChessGame> e : games.entrySet()) {
+				ChessGame game = e.getValue();
+				out.writeBoolean(true);
+				out.writeLong(e.getKey());
+				synchronized (game) {
+					GameSnapshot.write(game, out);
+				}
+				count++;
+			}
+			out.writeBoolean(false);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return count;
+	}
+
+	/**
+	 * Restores all sessions from a snapshot file into this host, replacing any
+	 * live session with the same id. If a move log is set, each restored game
+	 * is written to it as a keyframe and keeps logging its moves, so that
+	 * {@link #recover} can rebuild it from the log alone.
+	 *
+	 * @param file snapshot file written by {@link #writeSnapshot}
+	 * @return number of sessions restored
+	 * @throws IOException if the file is unreadable or corrupt
+	 */
+	public int restore(Path file) throws IOException {
+		int count = 0;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(file), IO_BUFFER))) {
+			if (in.readInt() != SNAPSHOT_MAGIC) {
+				throw new IOException("Not a session snapshot: " + file);
+			}
+			while (in.readBoolean()) {
+				long id = in.readLong();
+				ChessGame game = GameSnapshot.read(in);
+				MoveLog log = moveLog;
+				if (log != null) {
+					log.appendKeyframe(id, game);
+					game.addMoveListener(log.listenerFor(id));
+				}
+				games.put(id, game);
+				broadcasts.remove(id);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Starts writing a snapshot of all sessions every {@code periodMillis}.
+	 * Failed writes are reported and retried on the next period.
+	 *
+	 * @param file         snapshot file
+	 * @param periodMillis interval between snapshots
+	 */
+	public synchronized void startSnapshots(Path file, long periodMillis) {
+		stopSnapshots();
+		if (snapshotter == null) {
+			snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "session-snapshot");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		snapshotTask = snapshotter.scheduleWithFixedDelay(() -> {
+			try {
+				writeSnapshot(file);
+			} catch (IOException e) {
+				System.err.println("[SNAPSHOT] Failed to write " + file + ": " + e.getMessage());
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/** Stops periodic snapshots, if running. */
+	public synchronized void stopSnapshots() {
+		if (snapshotTask != null) {
+			snapshotTask.cancel(false);
+			snapshotTask = null;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring buffer of state transitions, filled by
+ * {@link ChessGame#setState} when attached with
+ * {@link ChessGame#setTracer}. Each entry records the old and new state
+ * class, when the transition started, how long {@code exit()} plus
+ * {@code enter()} took, and the transition's position in its chain (0 for
+ * the transition a command asked for, 1+ for those made from
+ * {@code enter()}).
+ *
+ * Recording writes into preallocated parallel arrays and never allocates.
+ * A tracer is written by the game's thread only; read it from that thread
+ * or after the game has stopped.
+ */
+public class TransitionTracer {
+
+	/** One recorded transition. */
+	public record Event(Class<?> from, Class<?> to, long startNanos, long durationNanos, int chainIndex) {
+	}
+
+	private final int mask;
+	private final Class<?>[] from;
+	private final Class<?>[] to;
+	private final long[] startNanos;
+	private final long[] durationNanos;
+	private final int[] chainIndex;
+	private long count;
+	private int longestChain;
+
+	/**
+	 * @param capacity number of most recent transitions kept; rounded up to a
+	 *                 power of two
+	 */
+	public TransitionTracer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		mask = size - 1;
+		from = new Class<?>[size];
+		to = new Class<?>[size];
+		startNanos = new long[size];
+		durationNanos = new long[size];
+		chainIndex = new int[size];
+	}
+
+	void record(Class<?> fromClass, Class<?> toClass, long start, long duration, int index) {
+		int i = (int) count & mask;
+		from[i] = fromClass;
+		to[i] = toClass;
+		startNanos[i] = start;
+		durationNanos[i] = duration;
+		chainIndex[i] = index;
+		count++;
+		if (index + 1 > longestChain) {
+			longestChain = index + 1;
+		}
+	}
+
+	/** Returns the number of transitions recorded so far (including overwritten ones). */
+	public long count() {
+		return count;
+	}
+
+	/** Returns the sequence number of the oldest transition still in the buffer. */
+	public long oldest() {
+		return Math.max(0, count - (mask + 1));
+	}
+
+	/** Returns the length of the longest transition chain seen. */
+	public int longestChain() {
+		return longestChain;
+	}
+
+	/**
+	 * Returns one recorded transition.
+	 *
+	 * @param seq sequence number in {@code [oldest(), count())}
+	 * @return the transition
+	 * @throws IndexOutOfBoundsException if the entry was overwritten or not yet written
+	 */
+	public Event get(long seq) {
+		if (seq < oldest() || seq >= count) {
+			throw new IndexOutOfBoundsException("Transition " + seq + " not in buffer");
+		}
+		int i = (int) seq & mask;
+		return new Event(from[i], to[i], startNanos[i], durationNanos[i], chainIndex[i]);
+	}
+
+	/** Returns all transitions still in the buffer, oldest first. */
+	public List<Event> events() {
+		List<Event> list = new ArrayList<>();
+		for (long seq = oldest(); seq < count; seq++) {
+			list.add(get(seq));
+		}
+		return list;
+	}
+
+	/** Forgets all recorded transitions. */
+	public void clear() {
+		count = 0;
+		longestChain = 0;
+	}
+}
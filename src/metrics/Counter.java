@@ -0,0 +1,44 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free monotonically increasing counter. Recording never allocates.
+ */
+public final class Counter {
+
+    private final String name;
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @param name metric name used in dumps and JMX
+     */
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    /** Adds one. */
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    /** Adds {@code n}. */
+    public void add(long n) {
+        count.addAndGet(n);
+    }
+
+    /** @return current value */
+    public long get() {
+        return count.get();
+    }
+
+    /** @return metric name */
+    public String name() {
+        return name;
+    }
+
+    /** Resets the counter to zero. */
+    public void reset() {
+        count.set(0);
+    }
+}
@@ -0,0 +1,136 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram: values (in
+ * nanoseconds) are counted in log-linear buckets, i.e. one group of
+ * {@value #SUB_BUCKETS} equal-width buckets per power of two, which keeps the
+ * relative error of every percentile under 1 / {@value #SUB_BUCKETS} while
+ * covering the whole {@code long} range in a fixed array.
+ *
+ * {@link #record(long)} is a few bit operations and one atomic increment; it
+ * never allocates.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param name metric name used in dumps and JMX
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos elapsed time in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long v = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(v));
+        total.incrementAndGet();
+        sum.addAndGet(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+            // retry until we publish v or someone publishes a larger value
+        }
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos}.
+     *
+     * @param startNanos a value previously read from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /** @return number of recorded values */
+    public long count() {
+        return total.get();
+    }
+
+    /** @return mean of recorded values in nanoseconds, or 0 if empty */
+    public double mean() {
+        long n = total.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /** @return largest recorded value in nanoseconds */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of the value at the given percentile.
+     *
+     * @param percentile in the range 0–100
+     * @return nanoseconds, or 0 if empty
+     */
+    public long percentile(double percentile) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** @return metric name */
+    public String name() {
+        return name;
+    }
+
+    /** Clears all recorded values. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Values below {@code SUB_BUCKETS} get one bucket each; above that, the
+     * bucket is chosen by the position of the highest bit plus the next
+     * {@code SUB_BITS} bits.
+     */
+    private static int bucketOf(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS + 1; // >= 1
+        int sub = (int) (v >>> (exp - 1)) & (SUB_BUCKETS - 1);
+        return exp * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        int exp = bucket / SUB_BUCKETS;
+        int sub = bucket % SUB_BUCKETS;
+        if (exp == 0) {
+            return sub;
+        }
+        long base = (long) (SUB_BUCKETS | sub) << (exp - 1);
+        return base + (1L << (exp - 1)) - 1;
+    }
+}
@@ -0,0 +1,179 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide metrics for the rules engine, move handling and state
+ * machine. Every metric is a static constant, so instrumented code records
+ * with a plain field access and an atomic update and never allocates.
+ *
+ * The registry can be read as text ({@link #dump()}, also available as the
+ * {@code stats} command) or through JMX after {@link #registerMBean()}.
+ */
+public final class Metrics implements MetricsMXBean {
+
+    /** JMX name the registry is published under. */
+    public static final String OBJECT_NAME = "chess:type=Metrics";
+
+    /** Calls to {@code Logic.isLegal}; games validate moves with {@link #CACHED_LEGALITY_CHECKS} instead. */
+    public static final Counter LEGALITY_CHECKS = new Counter("logic.isLegal.calls");
+    /** Moves {@code ChessGame.tryMove} validated against its legal-move cache. */
+    public static final Counter CACHED_LEGALITY_CHECKS = new Counter("game.legality.cached");
+    /** Squares whose legal moves the move cache had to generate (cache misses). */
+    public static final Counter MOVE_CACHE_MISSES = new Counter("moveCache.misses");
+    /** Moves accepted by {@code ChessGame.tryMove}. */
+    public static final Counter MOVES_PLAYED = new Counter("game.moves.played");
+    /** Moves rejected by {@code ChessGame.tryMove}. */
+    public static final Counter ILLEGAL_MOVES = new Counter("game.moves.illegal");
+    /** Calls to {@code ChessGame.setState}. */
+    public static final Counter STATE_TRANSITIONS = new Counter("state.transitions");
+
+    /** Latency of {@code ChessGame.tryMove}. */
+    public static final LatencyHistogram TRY_MOVE = new LatencyHistogram("game.tryMove");
+    /** Latency of {@code Logic.isCheckmated}. */
+    public static final LatencyHistogram IS_CHECKMATED = new LatencyHistogram("logic.isCheckmated");
+
+    // One counter per target state class; ClassValue lookups do not allocate
+    // once a class has been seen.
+    private static final Map<String, Counter> ENTERED = new ConcurrentHashMap<>();
+    private static final ClassValue<Counter> ENTERED_BY_CLASS = new ClassValue<>() {
+        @Override
+        protected Counter computeValue(Class<?> type) {
+            return ENTERED.computeIfAbsent(type.getSimpleName(), n -> new Counter("state.entered." + n));
+        }
+    };
+
+    private static final Counter[] COUNTERS = { LEGALITY_CHECKS, CACHED_LEGALITY_CHECKS, MOVE_CACHE_MISSES,
+            MOVES_PLAYED, ILLEGAL_MOVES, STATE_TRANSITIONS };
+    private static final LatencyHistogram[] HISTOGRAMS = { TRY_MOVE, IS_CHECKMATED };
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    private Metrics() {
+    }
+
+    /**
+     * Counts a transition into a state of the given class.
+     *
+     * @param stateClass class of the state being entered
+     */
+    public static void stateEntered(Class<?> stateClass) {
+        STATE_TRANSITIONS.increment();
+        ENTERED_BY_CLASS.get(stateClass).increment();
+    }
+
+    /**
+     * Publishes the registry as an MXBean on the platform MBean server. Safe to
+     * call more than once.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            System.err.println("[METRICS] JMX registration failed: " + e.getMessage());
+        }
+    }
+
+    /** @return a text dump of every metric, one per line */
+    public static String dumpText() {
+        StringBuilder sb = new StringBuilder(512);
+        for (Counter c : COUNTERS) {
+            sb.append(c.name()).append(" = ").append(c.get()).append('\n');
+        }
+        ENTERED.values().stream()
+                .sorted((a, b) -> a.name().compareTo(b.name()))
+                .forEach(c -> sb.append(c.name()).append(" = ").append(c.get()).append('\n'));
+        for (LatencyHistogram h : HISTOGRAMS) {
+            sb.append(h.name())
+                    .append(" count=").append(h.count())
+                    .append(" mean=").append(Math.round(h.mean())).append("ns")
+                    .append(" p50=").append(h.percentile(50)).append("ns")
+                    .append(" p99=").append(h.percentile(99)).append("ns")
+                    .append(" p99.9=").append(h.percentile(99.9)).append("ns")
+                    .append(" max=").append(h.max()).append("ns\n");
+        }
+        return sb.toString();
+    }
+
+    /** Resets every metric to zero. */
+    public static void resetAll() {
+        for (Counter c : COUNTERS) {
+            c.reset();
+        }
+        for (Counter c : ENTERED.values()) {
+            c.reset();
+        }
+        for (LatencyHistogram h : HISTOGRAMS) {
+            h.reset();
+        }
+    }
+
+    // -- MetricsMXBean --
+
+    @Override
+    public long getLegalityChecks() {
+        return LEGALITY_CHECKS.get();
+    }
+
+    @Override
+    public long getCachedLegalityChecks() {
+        return CACHED_LEGALITY_CHECKS.get();
+    }
+
+    @Override
+    public long getMoveCacheMisses() {
+        return MOVE_CACHE_MISSES.get();
+    }
+
+    @Override
+    public long getMovesPlayed() {
+        return MOVES_PLAYED.get();
+    }
+
+    @Override
+    public long getIllegalMoves() {
+        return ILLEGAL_MOVES.get();
+    }
+
+    @Override
+    public double getIllegalMoveRate() {
+        long illegal = ILLEGAL_MOVES.get();
+        long attempts = illegal + MOVES_PLAYED.get();
+        return attempts == 0 ? 0 : (double) illegal / attempts;
+    }
+
+    @Override
+    public long getStateTransitions() {
+        return STATE_TRANSITIONS.get();
+    }
+
+    @Override
+    public long getTryMoveP99Nanos() {
+        return TRY_MOVE.percentile(99);
+    }
+
+    @Override
+    public long getCheckmateP99Nanos() {
+        return IS_CHECKMATED.percentile(99);
+    }
+
+    @Override
+    public String dump() {
+        return dumpText();
+    }
+
+    @Override
+    public void reset() {
+        resetAll();
+    }
+}
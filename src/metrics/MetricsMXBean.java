@@ -0,0 +1,41 @@
+package metrics;
+
+/**
+ * JMX view of {@link Metrics}. Registered under
+ * {@value Metrics#OBJECT_NAME} by {@link Metrics#registerMBean()}.
+ */
+public interface MetricsMXBean {
+
+    /** @return calls to {@code Logic.isLegal} (engine and tools; games use the move cache) */
+    long getLegalityChecks();
+
+    /** @return moves validated against a game's legal-move cache */
+    long getCachedLegalityChecks();
+
+    /** @return squares whose legal moves the move cache had to generate */
+    long getMoveCacheMisses();
+
+    /** @return moves played */
+    long getMovesPlayed();
+
+    /** @return moves rejected as illegal */
+    long getIllegalMoves();
+
+    /** @return fraction of move attempts rejected as illegal */
+    double getIllegalMoveRate();
+
+    /** @return state changes through {@code ChessGame.setState} */
+    long getStateTransitions();
+
+    /** @return 99th percentile {@code ChessGame.tryMove} latency in ns */
+    long getTryMoveP99Nanos();
+
+    /** @return 99th percentile {@code Logic.isCheckmated} latency in ns */
+    long getCheckmateP99Nanos();
+
+    /** @return the full text dump, as printed by the {@code stats} command */
+    String dump();
+
+    /** Resets every metric to zero. */
+    void reset();
+}
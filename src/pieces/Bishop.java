@@ -0,0 +1,18 @@
+package pieces;
+
+public class Bishop extends Piece {
+
+	/*
+	 * A bishop moves any distance along a diagonal.
+	 * The movement rules live in Logic, like those of the other pieces.
+	 */
+	public Bishop(int[] coordinates, String color) {
+		super(coordinates, color);
+	}
+
+	@Override
+	public char symbol() {
+		// White bishop = 'B', black bishop = 'b'
+		return white ? 'B' : 'b';
+	}
+}
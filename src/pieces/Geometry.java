@@ -0,0 +1,175 @@
+package pieces;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Precomputed square geometry of the 8x8 board, for the movement rules to
+ * walk instead of doing coordinate arithmetic and bounds checks. Squares are
+ * numbered {@code row * 8 + col} (row 0 = rank 8, col 0 = 'a'), as in the
+ * command parser and the move log.
+ * <ul>
+ * <li>{@code NEIGHBOR[dir][sq]}: the adjacent square in a direction, or -1
+ * off the board;</li>
+ * <li>{@code RAYS[dir][sq]}: every square along a direction, nearest
+ * first;</li>
+ * <li>{@code DIRECTION[from * 64 + to]}: the direction leading from one
+ * square to another along a rank, file or diagonal, or -1;</li>
+ * <li>{@code DISTANCE[from * 64 + to]}: king-move distance;</li>
+ * <li>{@code KNIGHT[sq]} and {@code KNIGHT_MASK[sq]}: the knight jumps from
+ * a square, as a list and as a 64-bit set.</li>
+ * </ul>
+ * The arrays are shared and must not be modified, so they are only visible
+ * inside this package; other packages read them through the accessors. A
+ * build-time copy ({@link TableImage}) is loaded instead of computing them
+ * when present, to save the work at startup.
+ */
+public final class Geometry {
+
+    static final int ROWS = 8;
+    static final int COLS = 8;
+    public static final int SQUARES = ROWS * COLS;
+
+    // Directions, clockwise from north (towards rank 8). Even = orthogonal.
+    public static final int N = 0, NE = 1, E = 2, SE = 3, S = 4, SW = 5, W = 6, NW = 7;
+    private static final int[] DR = { -1, -1, 0, 1, 1, 1, 0, -1 };
+    private static final int[] DC = { 0, 1, 1, 1, 0, -1, -1, -1 };
+    private static final int[] KNIGHT_DR = { -2, -2, -1, -1, 1, 1, 2, 2 };
+    private static final int[] KNIGHT_DC = { -1, 1, -2, 2, -2, 2, -1, 1 };
+
+    static final int[][] NEIGHBOR = new int[8][SQUARES];
+    static final int[][][] RAYS = new int[8][SQUARES][];
+    static final byte[] DIRECTION = new byte[SQUARES * SQUARES];
+    static final byte[] DISTANCE = new byte[SQUARES * SQUARES];
+    static final int[][] KNIGHT = new int[SQUARES][];
+    static final long[] KNIGHT_MASK = new long[SQUARES];
+
+    static {
+        ByteBuffer image = TableImage.open();
+        if (image != null) {
+            load(image);
+        } else {
+            compute();
+        }
+    }
+
+    private Geometry() {
+    }
+
+    /**
+     * @param dir one of {@link #N} .. {@link #NW}
+     * @return the adjacent square in direction {@code dir}, or -1 off the board
+     */
+    public static int neighbor(int dir, int sq) {
+        return NEIGHBOR[dir][sq];
+    }
+
+    /** @return the direction leading from {@code from} to {@code to}, or -1 if they are not aligned */
+    public static int direction(int from, int to) {
+        return DIRECTION[from * SQUARES + to];
+    }
+
+    /** @return the number of king moves between two squares */
+    public static int distance(int from, int to) {
+        return DISTANCE[from * SQUARES + to];
+    }
+
+    /** @return the squares a knight on {@code sq} jumps to, as a bit set */
+    public static long knightMask(int sq) {
+        return KNIGHT_MASK[sq];
+    }
+
+    /**
+     * Is every square strictly between {@code from} and {@code to} empty?
+     * The squares must lie on a common rank, file or diagonal.
+     *
+     * @param board pieces by [row][col]
+     * @return {@code false} if the squares are not aligned or the path is blocked
+     */
+    static boolean pathClear(Piece[][] board, int from, int to) {
+        int dir = DIRECTION[from * SQUARES + to];
+        if (dir < 0) {
+            return false;
+        }
+        for (int sq : RAYS[dir][from]) {
+            if (sq == to) {
+                return true;
+            }
+            if (board[sq / COLS][sq % COLS] != null) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void compute() {
+        for (int sq = 0; sq < SQUARES; sq++) {
+            int r = sq / COLS, c = sq % COLS;
+            for (int d = 0; d < 8; d++) {
+                int len = 0;
+                int[] ray = new int[Math.max(ROWS, COLS)];
+                int rr = r + DR[d], cc = c + DC[d];
+                while (rr >= 0 && rr < ROWS && cc >= 0 && cc < COLS) {
+                    ray[len++] = rr * COLS + cc;
+                    rr += DR[d];
+                    cc += DC[d];
+                }
+                RAYS[d][sq] = Arrays.copyOf(ray, len);
+                NEIGHBOR[d][sq] = len > 0 ? ray[0] : -1;
+            }
+            int[] jumps = new int[8];
+            int count = 0;
+            for (int j = 0; j < 8; j++) {
+                int rr = r + KNIGHT_DR[j], cc = c + KNIGHT_DC[j];
+                if (rr >= 0 && rr < ROWS && cc >= 0 && cc < COLS) {
+                    jumps[count++] = rr * COLS + cc;
+                    KNIGHT_MASK[sq] |= 1L << (rr * COLS + cc);
+                }
+            }
+            KNIGHT[sq] = Arrays.copyOf(jumps, count);
+        }
+        Arrays.fill(DIRECTION, (byte) -1);
+        for (int from = 0; from < SQUARES; from++) {
+            for (int d = 0; d < 8; d++) {
+                for (int to : RAYS[d][from]) {
+                    DIRECTION[from * SQUARES + to] = (byte) d;
+                }
+            }
+            for (int to = 0; to < SQUARES; to++) {
+                int dr = Math.abs(to / COLS - from / COLS), dc = Math.abs(to % COLS - from % COLS);
+                DISTANCE[from * SQUARES + to] = (byte) Math.max(dr, dc);
+            }
+        }
+    }
+
+    /**
+     * Copies the tables from the build-time image (see {@link TableImage}). The
+     * ray and jump lists are rebuilt from the neighbor and knight tables,
+     * which is a walk along the image rather than a computation.
+     */
+    private static void load(ByteBuffer image) {
+        image.get(TableImage.DIRECTION, DIRECTION);
+        image.get(TableImage.DISTANCE, DISTANCE);
+        for (int d = 0; d < 8; d++) {
+            for (int sq = 0; sq < SQUARES; sq++) {
+                NEIGHBOR[d][sq] = image.get(TableImage.NEIGHBOR + d * SQUARES + sq);
+            }
+        }
+        int[] ray = new int[Math.max(ROWS, COLS)];
+        for (int sq = 0; sq < SQUARES; sq++) {
+            for (int d = 0; d < 8; d++) {
+                int len = 0;
+                for (int t = NEIGHBOR[d][sq]; t >= 0; t = NEIGHBOR[d][t]) {
+                    ray[len++] = t;
+                }
+                RAYS[d][sq] = Arrays.copyOf(ray, len);
+            }
+            long jumps = image.getLong(TableImage.KNIGHT + 8 * sq);
+            KNIGHT_MASK[sq] = jumps;
+            KNIGHT[sq] = new int[Long.bitCount(jumps)];
+            for (int i = 0; jumps != 0; i++, jumps &= jumps - 1) {
+                KNIGHT[sq][i] = Long.numberOfTrailingZeros(jumps);
+            }
+        }
+    }
+}
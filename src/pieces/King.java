@@ -16,6 +16,6 @@ public class King extends Piece {
 	@Override
 	public char symbol() {
 		// White king = 'K', black king = 'k'
-		return "WHITE".equalsIgnoreCase(color) ? 'K' : 'k';
+		return white ? 'K' : 'k';
 	}
 }
@@ -0,0 +1,18 @@
+package pieces;
+
+public class Knight extends Piece {
+
+	/*
+	 * A knight jumps in an L shape and is never blocked.
+	 * The movement rules live in Logic, like those of the other pieces.
+	 */
+	public Knight(int[] coordinates, String color) {
+		super(coordinates, color);
+	}
+
+	@Override
+	public char symbol() {
+		// White knight = 'N', black knight = 'n'
+		return white ? 'N' : 'n';
+	}
+}
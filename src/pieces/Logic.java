@@ -1,22 +1,92 @@
 package pieces;
 
+import java.util.Arrays;
+
+import metrics.Metrics;
+
 /**
- * Simple rules for King, Rook, Pawn, and basic check/checkmate detection.
+ * Rules of chess for all six piece types, including castling, en passant
+ * and promotion, plus check/checkmate detection.
  * - Board is Piece[8][8]
  * - Coordinates: row 0 = rank 8 (top), row 7 = rank 1 (bottom); col 0 = 'a'
+ * - Squares are also numbered row * 8 + col, as in {@link Geometry}
  * - WHITE moves "up" (row-1), BLACK moves "down" (row+1)
- * - No castling, en passant, double pawn push, or promotion.
- * 
+ * - Castling rights are a 4-bit mask ({@link #WHITE_KINGSIDE} ...) and the
+ *   en-passant target is a square index or {@link #NO_EN_PASSANT}; both are
+ *   kept by the caller (see ChessGame) and passed in.
+ * - Moves are encoded as {@code from | to << 6 | promotion << 12}.
+ *
  * @author Christoph Dittrich
  * @author Abhishek Amkamgari
- * 
- * @version 1.0
+ *
+ * @version 2.0
  */
 public class Logic {
 
+    /** Upper bound on the number of legal moves in any position. */
+    public static final int MAX_MOVES = 256;
+
+    /** Castling rights bits. */
+    public static final int WHITE_KINGSIDE = 1, WHITE_QUEENSIDE = 2, BLACK_KINGSIDE = 4, BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    /** Value of the en-passant square when no capture is possible. */
+    public static final int NO_EN_PASSANT = -1;
+
+    /** Promotion codes stored in bits 12-14 of a move. */
+    public static final int PROMO_NONE = 0, PROMO_KNIGHT = 1, PROMO_BISHOP = 2, PROMO_ROOK = 3, PROMO_QUEEN = 4;
+    private static final String PROMO_SYMBOLS = "?NBRQ";
+
+    // rights &= CASTLE_MASK[from] & CASTLE_MASK[to]: moving a king or rook, or
+    // capturing a rook on its home square, clears the matching rights
+    private static final int[] CASTLE_MASK = new int[64];
+    static {
+        Arrays.fill(CASTLE_MASK, ALL_CASTLING);
+        CASTLE_MASK[60] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE); // e1
+        CASTLE_MASK[63] &= ~WHITE_KINGSIDE; // h1
+        CASTLE_MASK[56] &= ~WHITE_QUEENSIDE; // a1
+        CASTLE_MASK[4] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE); // e8
+        CASTLE_MASK[7] &= ~BLACK_KINGSIDE; // h8
+        CASTLE_MASK[0] &= ~BLACK_QUEENSIDE; // a8
+    }
+
     private Logic() {
     }
 
+    // -- Move encoding --
+
+    /** Encodes a move; {@code promotion} is one of the PROMO_* codes. */
+    public static int move(int from, int to, int promotion) {
+        return from | to << 6 | promotion << 12;
+    }
+
+    /** Origin square of an encoded move. */
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    /** Destination square of an encoded move. */
+    public static int to(int move) {
+        return (move >> 6) & 63;
+    }
+
+    /** Promotion code of an encoded move (PROMO_NONE if none). */
+    public static int promotion(int move) {
+        return (move >> 12) & 7;
+    }
+
+    /**
+     * Maps a piece letter ('q', 'R', ...) to a promotion code.
+     *
+     * @return the PROMO_* code, or -1 if the letter is not a promotion piece
+     */
+    public static int promotionCode(char letter) {
+        int code = PROMO_SYMBOLS.indexOf(Character.toUpperCase(letter));
+        return code > 0 ? code : -1;
+    }
+
+    // -- Legality --
+
     /** Validate a move like "e2" -> "e4" for the side toMove ("WHITE"/"BLACK"). */
     public static boolean isLegal(Piece[][] board, String from, String to, String toMove) {
         int[] a = parseSquare(from);
@@ -24,178 +94,452 @@ public class Logic {
         return isLegal(board, a[0], a[1], b[0], b[1], toMove);
     }
 
-    /** Validate a move using row/col, including "no self-check". */
+    /**
+     * Validate a move using row/col, including "no self-check". Without game
+     * state no castling rights or en-passant square are assumed.
+     */
     public static boolean isLegal(Piece[][] board, int fr, int fc, int tr, int tc, String toMove) {
         if (!inside(fr, fc) || !inside(tr, tc))
             return false;
+        return isLegal(board, move(fr * 8 + fc, tr * 8 + tc, PROMO_NONE), 0, NO_EN_PASSANT, toMove);
+    }
 
-        Piece mover = board[fr][fc];
-        if (mover == null)
-            return false;
-        if (!equalsIgnoreCase(mover.getColor(), toMove))
-            return false;
+    /**
+     * Validate an encoded move, including castling and en passant, and
+     * "no self-check". A promotion code is only legal on a pawn move to the
+     * last rank; without one, such a move promotes to a queen.
+     *
+     * @param castling castling rights mask
+     * @param ep       en-passant target square, or {@link #NO_EN_PASSANT}
+     */
+    public static boolean isLegal(Piece[][] board, int move, int castling, int ep, String toMove) {
+        Metrics.LEGALITY_CHECKS.increment();
+        int from = from(move), to = to(move);
 
-        Piece dest = board[tr][tc];
-        if (dest != null && equalsIgnoreCase(dest.getColor(), mover.getColor()))
+        Piece mover = at(board, from);
+        if (mover == null || mover.isWhite() != isWhiteName(toMove))
+            return false;
+        if (!promotionFits(board, move))
             return false;
 
         // Piece movement rules (pseudo-legal)
-        if (!pseudoLegal(board, mover, fr, fc, tr, tc))
+        if (!pseudoLegal(board, mover, from, to, castling, ep))
             return false;
 
         // Must not leave own king in check
-        return !leavesOwnKingInCheck(board, mover, fr, fc, tr, tc);
+        return !leavesOwnKingInCheck(board, mover, from, to, findKing(board, mover.isWhite()));
+    }
+
+    /**
+     * Does the move's promotion code fit the move: none, or a pawn moving
+     * to the last rank? Says nothing about the rest of the move's legality.
+     */
+    public static boolean promotionFits(Piece[][] board, int move) {
+        if (promotion(move) == PROMO_NONE)
+            return true;
+        Piece mover = at(board, from(move));
+        int row = to(move) >> 3;
+        return mover != null && kind(mover) == 'P' && (row == 0 || row == 7);
     }
 
     /** Is the given color currently in check? */
     public static boolean isInCheck(Piece[][] board, String color) {
-        int[] k = findKing(board, color);
-        if (k == null)
-            return false;
-        int kr = k[0], kc = k[1];
-        String enemy = enemyOf(color);
-
-        // Is any enemy piece pseudo-legally attacking the king square?
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece p = board[r][c];
-                if (p == null || !equalsIgnoreCase(p.getColor(), enemy))
+        boolean white = isWhiteName(color);
+        int k = findKing(board, white);
+        return k >= 0 && isAttacked(board, k, !white);
+    }
+
+    /** Checkmate = in check and no legal move exists to escape it. */
+    public static boolean isCheckmated(Piece[][] board, String color) {
+        return isCheckmated(board, color, NO_EN_PASSANT);
+    }
+
+    /**
+     * Checkmate = in check and no legal move exists to escape it (an
+     * en-passant capture may be the only escape, so {@code ep} matters).
+     */
+    public static boolean isCheckmated(Piece[][] board, String color, int ep) {
+        long start = System.nanoTime();
+        // Castling never escapes check, so no castling rights are needed
+        boolean mated = isInCheck(board, color) && !hasLegalMove(board, color, 0, ep);
+        Metrics.IS_CHECKMATED.recordSince(start);
+        return mated;
+    }
+
+    /** Stalemate = not in check, but no legal move. */
+    public static boolean isStalemated(Piece[][] board, String color, int castling, int ep) {
+        return !isInCheck(board, color) && !hasLegalMove(board, color, castling, ep);
+    }
+
+    /** Does {@code color} have at least one legal move? Stops at the first one found. */
+    public static boolean hasLegalMove(Piece[][] board, String color, int castling, int ep) {
+        return generate(board, isWhiteName(color), castling, ep, null) > 0;
+    }
+
+    /**
+     * Is square {@code sq} attacked by any piece of the given side? Walks
+     * outward from the square along the {@link Geometry} rays and knight jumps,
+     * so only the pieces that could reach it are looked at.
+     */
+    public static boolean isAttacked(Piece[][] board, int sq, boolean byWhite) {
+        for (int dir = Geometry.N; dir <= Geometry.NW; dir++) {
+            int[] ray = Geometry.RAYS[dir][sq];
+            for (int i = 0; i < ray.length; i++) {
+                Piece p = at(board, ray[i]);
+                if (p == null)
                     continue;
-                if (pseudoLegal(board, p, r, c, kr, kc))
-                    return true;
+                if (p.isWhite() == byWhite) {
+                    char k = kind(p);
+                    if (k == 'Q' || k == ((dir & 1) == 0 ? 'R' : 'B'))
+                        return true;
+                    if (i == 0) {
+                        if (k == 'K')
+                            return true;
+                        // a WHITE pawn attacks "up", so it sits below (S) the square
+                        if (k == 'P' && (byWhite ? dir == Geometry.SE || dir == Geometry.SW
+                                : dir == Geometry.NE || dir == Geometry.NW))
+                            return true;
+                    }
+                }
+                break;
             }
         }
+        for (int t : Geometry.KNIGHT[sq]) {
+            Piece p = at(board, t);
+            if (p != null && p.isWhite() == byWhite && kind(p) == 'N')
+                return true;
+        }
         return false;
     }
 
-    /** Checkmate = in check and no legal move exists to escape it. */
-    public static boolean isCheckmated(Piece[][] board, String color) {
-        if (!isInCheck(board, color))
-            return false;
+    // -- Move generation --
 
-        // Try every pseudo-legal move for 'color'; if any resolves check, it's not
-        // mate.
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece p = board[r][c];
-                if (p == null || !equalsIgnoreCase(p.getColor(), color))
-                    continue;
+    /** Generates every legal move for {@code color}, assuming no castling rights or en passant. */
+    public static int legalMoves(Piece[][] board, String color, int[] moves) {
+        return legalMoves(board, color, 0, NO_EN_PASSANT, moves);
+    }
 
-                for (int tr = 0; tr < 8; tr++) {
-                    for (int tc = 0; tc < 8; tc++) {
-                        if (r == tr && c == tc)
-                            continue;
-                        if (!pseudoLegal(board, p, r, c, tr, tc))
+    /**
+     * Generates every legal move for {@code color}: pseudo-legal targets
+     * are found by walking the {@link Geometry} tables from each piece, then
+     * moves that leave the own king in check are dropped. A pawn move to
+     * the last rank is generated once per promotion piece.
+     *
+     * @param moves output buffer of at least {@link #MAX_MOVES} entries
+     * @return number of moves written
+     */
+    public static int legalMoves(Piece[][] board, String color, int castling, int ep, int[] moves) {
+        return generate(board, isWhiteName(color), castling, ep, moves);
+    }
+
+    /** Generator behind legalMoves; with {@code moves == null} it returns 1 at the first legal move. */
+    private static int generate(Piece[][] board, boolean white, int castling, int ep, int[] moves) {
+        int king = findKing(board, white);
+        int n = 0;
+        for (int from = 0; from < 64; from++) {
+            Piece p = at(board, from);
+            if (p == null || p.isWhite() != white)
+                continue;
+
+            char k = kind(p);
+            switch (k) {
+                case 'R':
+                case 'B':
+                case 'Q':
+                    for (int dir = (k == 'B' ? Geometry.NE : Geometry.N); dir <= Geometry.NW; dir += (k == 'Q' ? 1 : 2)) {
+                        for (int to : Geometry.RAYS[dir][from]) {
+                            Piece q = at(board, to);
+                            if (q != null && q.isWhite() == white)
+                                break;
+                            n = addIfSafe(board, p, from, to, king, moves, n);
+                            if (q != null)
+                                break;
+                        }
+                        if (moves == null && n > 0)
+                            return n;
+                    }
+                    break;
+                case 'N':
+                    for (int to : Geometry.KNIGHT[from]) {
+                        Piece q = at(board, to);
+                        if (q == null || q.isWhite() != white)
+                            n = addIfSafe(board, p, from, to, king, moves, n);
+                    }
+                    break;
+                case 'K':
+                    for (int dir = Geometry.N; dir <= Geometry.NW; dir++) {
+                        int to = Geometry.NEIGHBOR[dir][from];
+                        if (to < 0)
                             continue;
-                        if (!leavesOwnKingInCheck(board, p, r, c, tr, tc)) {
-                            return false; // found an escape
+                        Piece q = at(board, to);
+                        if (q == null || q.isWhite() != white)
+                            n = addIfSafe(board, p, from, to, to, moves, n);
+                    }
+                    if (castling != 0) {
+                        for (int to = from - 2; to <= from + 2; to += 4) {
+                            if (to >= 0 && to < 64 && canCastle(board, p, from, to, castling))
+                                n = addIfSafe(board, p, from, to, to, moves, n);
                         }
                     }
+                    break;
+                case 'P': {
+                    int fwd = white ? Geometry.N : Geometry.S;
+                    int ahead = Geometry.NEIGHBOR[fwd][from];
+                    if (ahead < 0)
+                        break;
+                    if (at(board, ahead) == null) {
+                        n = addPawnMove(board, p, from, ahead, king, moves, n);
+                        int two = Geometry.NEIGHBOR[fwd][ahead];
+                        if (two >= 0 && (from >> 3) == (white ? 6 : 1) && at(board, two) == null)
+                            n = addIfSafe(board, p, from, two, king, moves, n);
+                    }
+                    for (int side = 0; side < 2; side++) {
+                        int to = Geometry.NEIGHBOR[white ? (side == 0 ? Geometry.NW : Geometry.NE)
+                                : (side == 0 ? Geometry.SW : Geometry.SE)][from];
+                        if (to < 0)
+                            continue;
+                        Piece q = at(board, to);
+                        if ((q != null && q.isWhite() != white) || to == ep)
+                            n = addPawnMove(board, p, from, to, king, moves, n);
+                    }
+                    break;
                 }
+                default:
+                    break;
             }
+            if (moves == null && n > 0)
+                return n;
         }
-        return true;
+        return n;
     }
 
-    /** Pseudo-legal rules */
-    private static boolean pseudoLegal(Piece[][] board, Piece mover, int fr, int fc, int tr, int tc) {
-        if (!inside(tr, tc))
-            return false;
-        Piece dest = board[tr][tc];
-        if (dest != null && equalsIgnoreCase(dest.getColor(), mover.getColor()))
+    /** Adds a pawn move, expanded into the four promotions on the last rank. */
+    private static int addPawnMove(Piece[][] board, Piece p, int from, int to, int king, int[] moves, int n) {
+        int row = to >> 3;
+        if (row != 0 && row != 7)
+            return addIfSafe(board, p, from, to, king, moves, n);
+        if (leavesOwnKingInCheck(board, p, from, to, king))
+            return n;
+        if (moves == null)
+            return n + 1;
+        for (int promo = PROMO_QUEEN; promo >= PROMO_KNIGHT; promo--)
+            moves[n++] = move(from, to, promo);
+        return n;
+    }
+
+    private static int addIfSafe(Piece[][] board, Piece p, int from, int to, int king, int[] moves, int n) {
+        if (!leavesOwnKingInCheck(board, p, from, to, king)) {
+            if (moves != null)
+                moves[n] = from | to << 6;
+            n++;
+        }
+        return n;
+    }
+
+    // -- Making moves --
+
+    /**
+     * Plays a move on the board, including the rook of a castling move, the
+     * pawn removed by en passant and the new piece of a promotion (a queen if
+     * the move carries no promotion code). The move must be legal.
+     *
+     * @param undo filled with what is needed to take the move back
+     * @return the new en-passant target square, or {@link #NO_EN_PASSANT}
+     */
+    public static int makeMove(Piece[][] board, int move, MoveUndo undo) {
+        int from = from(move), to = to(move);
+        Piece mover = at(board, from);
+        Piece captured = at(board, to);
+        int capturedSquare = to;
+        char k = kind(mover);
+
+        if (k == 'P' && ((from ^ to) & 7) != 0 && captured == null) {
+            // en passant: the captured pawn is beside the mover, not on the target
+            capturedSquare = (from & ~7) | (to & 7);
+            captured = at(board, capturedSquare);
+            set(board, capturedSquare, null);
+        }
+        set(board, to, mover);
+        set(board, from, null);
+        mover.setPos(to >> 3, to & 7);
+
+        undo.rook = null;
+        if (k == 'K' && (to - from == 2 || from - to == 2)) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = (from + to) >> 1;
+            Piece rook = at(board, rookFrom);
+            set(board, rookTo, rook);
+            set(board, rookFrom, null);
+            rook.setPos(rookTo >> 3, rookTo & 7);
+            undo.rook = rook;
+            undo.rookFrom = rookFrom;
+            undo.rookTo = rookTo;
+        }
+
+        undo.promoted = null;
+        int row = to >> 3;
+        if (k == 'P' && (row == 0 || row == 7)) {
+            int promo = promotion(move) == PROMO_NONE ? PROMO_QUEEN : promotion(move);
+            char symbol = PROMO_SYMBOLS.charAt(promo);
+            Piece promoted = Piece.create(mover.isWhite() ? symbol : Character.toLowerCase(symbol), row, to & 7);
+            set(board, to, promoted);
+            undo.promoted = promoted;
+            move = move(from, to, promo);
+        }
+
+        undo.move = move;
+        undo.mover = mover;
+        undo.captured = captured;
+        undo.capturedSquare = capturedSquare;
+        return k == 'P' && (to - from == 16 || from - to == 16) ? (from + to) >> 1 : NO_EN_PASSANT;
+    }
+
+    /** Takes back the move recorded in {@code undo}. */
+    public static void unmakeMove(Piece[][] board, MoveUndo undo) {
+        int from = from(undo.move), to = to(undo.move);
+        if (undo.rook != null) {
+            set(board, undo.rookFrom, undo.rook);
+            set(board, undo.rookTo, null);
+            undo.rook.setPos(undo.rookFrom >> 3, undo.rookFrom & 7);
+        }
+        set(board, from, undo.mover);
+        set(board, to, null);
+        undo.mover.setPos(from >> 3, from & 7);
+        if (undo.captured != null)
+            set(board, undo.capturedSquare, undo.captured);
+    }
+
+    /** Castling rights left after a move from {@code from} to {@code to}. */
+    public static int castlingAfter(int castling, int move) {
+        return castling & CASTLE_MASK[from(move)] & CASTLE_MASK[to(move)];
+    }
+
+    // -- Internals --
+
+    /**
+     * Pseudo-legal rules. Targets are found by walking the precomputed square
+     * tables in {@link Geometry}, so no bounds checks are needed; both squares
+     * must be on the board.
+     */
+    private static boolean pseudoLegal(Piece[][] board, Piece mover, int from, int to, int castling, int ep) {
+        Piece dest = at(board, to);
+        if (dest != null && dest.isWhite() == mover.isWhite())
             return false;
 
-        switch (Character.toUpperCase(mover.symbol())) {
+        int dir = Geometry.DIRECTION[from * 64 + to];
+        switch (kind(mover)) {
             case 'R':
-                // straight line and path clear
-                if (fr != tr && fc != tc)
-                    return false;
-                return pathClear(board, fr, fc, tr, tc);
+                // straight line (orthogonal direction) and path clear
+                return dir >= 0 && (dir & 1) == 0 && Geometry.pathClear(board, from, to);
+
+            case 'B':
+                // diagonal and path clear
+                return dir >= 0 && (dir & 1) == 1 && Geometry.pathClear(board, from, to);
+
+            case 'Q':
+                return dir >= 0 && Geometry.pathClear(board, from, to);
+
+            case 'N':
+                return (Geometry.KNIGHT_MASK[from] >>> to & 1) != 0;
 
             case 'K':
-                // one square in any direction
-                return Math.max(Math.abs(tr - fr), Math.abs(tc - fc)) == 1;
+                // one square in any direction, or castling
+                return Geometry.DISTANCE[from * 64 + to] == 1 || canCastle(board, mover, from, to, castling);
 
             case 'P': {
-                int dir = isWhite(mover) ? -1 : 1; // WHITE up, BLACK down
-                int dr = tr - fr, dc = tc - fc;
+                boolean white = mover.isWhite(); // WHITE up (N), BLACK down (S)
+                int ahead = Geometry.NEIGHBOR[white ? Geometry.N : Geometry.S][from];
 
                 // single forward push
-                if (dc == 0 && dest == null && dr == dir)
-                    return true;
-
-                // double forward push from starting position
-                if (dc == 0 && dest == null && dr == 2 * dir) {
-                    // Check if pawn is on starting rank
-                    if ((isWhite(mover) && fr == 6) || (!isWhite(mover) && fr == 1)) {
-                        // Check path is clear
-                        return board[fr + dir][fc] == null;
-                    }
+                if (to == ahead)
+                    return dest == null;
+
+                // double forward push from starting position, path clear
+                if (ahead >= 0 && to == Geometry.NEIGHBOR[white ? Geometry.N : Geometry.S][ahead]) {
+                    return dest == null && (from >> 3) == (white ? 6 : 1) && at(board, ahead) == null;
                 }
 
-                // diagonal capture
-                if (Math.abs(dc) == 1 && dr == dir && dest != null &&
-                        !equalsIgnoreCase(dest.getColor(), mover.getColor())) {
-                    return true;
+                // diagonal capture, or en passant onto the square just skipped
+                if (to == Geometry.NEIGHBOR[white ? Geometry.NE : Geometry.SE][from]
+                        || to == Geometry.NEIGHBOR[white ? Geometry.NW : Geometry.SW][from]) {
+                    return dest != null || to == ep;
                 }
                 return false;
             }
             default:
-                // Only King, Rook, and Pawn supported
                 return false;
         }
     }
 
-    /** Simulates the move and sees if the mover’s king is in check after it. */
-    private static boolean leavesOwnKingInCheck(Piece[][] board, Piece mover, int fr, int fc, int tr, int tc) {
-        Piece captured = board[tr][tc];
+    /**
+     * King from e1/e8 two squares towards a rook that still has its right:
+     * squares between king and rook empty, the king not in check and not
+     * passing through an attacked square. The destination is checked by
+     * the usual self-check test.
+     */
+    static boolean canCastle(Piece[][] board, Piece king, int from, int to, int castling) {
+        boolean white = king.isWhite();
+        if (from != (white ? 60 : 4))
+            return false;
+        int right, rookSq;
+        if (to == from + 2) {
+            right = white ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+            rookSq = from + 3;
+        } else if (to == from - 2) {
+            right = white ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+            rookSq = from - 4;
+        } else {
+            return false;
+        }
+        if ((castling & right) == 0)
+            return false;
+        Piece rook = at(board, rookSq);
+        if (rook == null || rook.isWhite() != white || kind(rook) != 'R')
+            return false;
+        if (!Geometry.pathClear(board, from, rookSq))
+            return false;
+        return !isAttacked(board, from, !white) && !isAttacked(board, (from + to) >> 1, !white);
+    }
 
-        board[tr][tc] = mover;
-        board[fr][fc] = null;
-        int oldR = mover.row(), oldC = mover.col();
-        mover.setPos(tr, tc);
+    /**
+     * Simulates the move and sees if the mover’s king is in check after it.
+     * {@code king} is the square the king ends up on.
+     */
+    static boolean leavesOwnKingInCheck(Piece[][] board, Piece mover, int from, int to, int king) {
+        if (kind(mover) == 'K')
+            king = to;
+        if (king < 0)
+            return false;
+        Piece captured = at(board, to);
+        int capturedSquare = to;
+        if (captured == null && kind(mover) == 'P' && ((from ^ to) & 7) != 0) {
+            capturedSquare = (from & ~7) | (to & 7); // en passant
+            captured = at(board, capturedSquare);
+            set(board, capturedSquare, null);
+        }
+        set(board, to, mover);
+        set(board, from, null);
 
-        boolean bad = isInCheck(board, mover.getColor());
+        boolean bad = isAttacked(board, king, !mover.isWhite());
 
         // undo
-        board[fr][fc] = mover;
-        board[tr][tc] = captured;
-        mover.setPos(oldR, oldC);
+        set(board, from, mover);
+        set(board, to, null);
+        set(board, capturedSquare, captured);
 
         return bad;
     }
 
     /**
-     * Checks if the path between two squares is clear of other pieces.
-     * Used by pieces that move in straight lines (like the rook).
-     */
-    private static boolean pathClear(Piece[][] board, int fr, int fc, int tr, int tc) {
-        int dr = Integer.compare(tr, fr);
-        int dc = Integer.compare(tc, fc);
-        int r = fr + dr, c = fc + dc;
-        while (r != tr || c != tc) {
-            if (board[r][c] != null)
-                return false;
-            r += dr;
-            c += dc;
-        }
-        return true;
-    }
-
-    /**
-     * Finds the position of the king of the given color on the board.
+     * Finds the square of the king of the given color, or -1.
      */
-    private static int[] findKing(Piece[][] board, String color) {
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                Piece p = board[r][c];
-                if (p != null && Character.toUpperCase(p.symbol()) == 'K'
-                        && equalsIgnoreCase(p.getColor(), color)) {
-                    return new int[] { r, c };
-                }
-            }
+    static int findKing(Piece[][] board, boolean white) {
+        for (int sq = 0; sq < 64; sq++) {
+            Piece p = at(board, sq);
+            if (p != null && p.isWhite() == white && kind(p) == 'K')
+                return sq;
         }
-        return null;
+        return -1;
     }
 
     /** "e2" -> [row,col]; row 0 = rank 8, col 0 = 'a'. */
@@ -212,15 +556,19 @@ public class Logic {
         return r >= 0 && r < 8 && c >= 0 && c < 8;
     }
 
-    private static boolean equalsIgnoreCase(String a, String b) {
-        return a != null && b != null && a.equalsIgnoreCase(b);
+    private static Piece at(Piece[][] board, int sq) {
+        return board[sq >> 3][sq & 7];
+    }
+
+    private static void set(Piece[][] board, int sq, Piece p) {
+        board[sq >> 3][sq & 7] = p;
     }
 
-    private static boolean isWhite(Piece p) {
-        return equalsIgnoreCase(p.getColor(), "WHITE");
+    private static char kind(Piece p) {
+        return Character.toUpperCase(p.symbol());
     }
 
-    private static String enemyOf(String color) {
-        return equalsIgnoreCase(color, "WHITE") ? "BLACK" : "WHITE";
+    private static boolean isWhiteName(String color) {
+        return "WHITE".equalsIgnoreCase(color);
     }
 }
@@ -0,0 +1,220 @@
+package pieces;
+
+import metrics.Metrics;
+
+/**
+ * Legal destinations per square, cached so that repeated queries about the
+ * same position ("where can the piece on e2 go?", or the same illegal move
+ * tried again) cost a lookup instead of a move generation.
+ *
+ * The cache has two layers, both bit sets of destination squares:
+ * <ul>
+ * <li>Pseudo-legal targets by square, computed from the piece's movement
+ * alone, together with the squares they were derived from (the piece's
+ * reach: its rays up to the first blocker, its jumps or its pawn squares).
+ * These survive moves: after a move only the entries whose square or reach
+ * contains a square the move changed are dropped.</li>
+ * <li>Legal targets by square for the current position: the pseudo-legal
+ * ones plus castling and en passant, minus those that leave the own king in
+ * check. These are filled lazily per square and dropped on every move, as
+ * a pin or check anywhere on the board can change them.</li>
+ * </ul>
+ * The cache follows a game through its immutable {@link Position}
+ * snapshots: when asked about a different snapshot than last time, it
+ * compares the two to find the changed squares. The board passed in must be
+ * the one the snapshot was taken from.
+ *
+ * Not thread-safe; a game uses it under its own lock or thread.
+ */
+public final class MoveCache {
+
+    private static final int UNKNOWN = -2;
+
+    private final long[] pseudo = new long[64];
+    private final long[] reach = new long[64];
+    private long pseudoValid;
+    private final long[] legal = new long[64];
+    private long legalValid;
+
+    // What the legal layer was computed for
+    private Position synced;
+    private boolean white;
+    private int king = UNKNOWN;
+    private boolean inCheck;
+
+    /**
+     * Returns the legal destinations of the piece on a square.
+     *
+     * @param board    the live board
+     * @param position snapshot of {@code board}, or {@code null} if there is
+     *                 no game
+     * @param white    {@code true} if WHITE is to move
+     * @param from     square index, {@code row * 8 + col}
+     * @return bit set of destination squares (bit {@code row * 8 + col}),
+     *         empty if the square does not hold a piece of the side to move
+     */
+    public long legalTargets(Piece[][] board, Position position, boolean white, int from) {
+        sync(position, white);
+        if (position == null) {
+            return 0;
+        }
+        if ((legalValid >>> from & 1) == 0) {
+            Metrics.MOVE_CACHE_MISSES.increment();
+            legal[from] = computeLegal(board, from);
+            legalValid |= 1L << from;
+        }
+        return legal[from];
+    }
+
+    /** Brings both layers up to date with {@code position}. */
+    private void sync(Position position, boolean white) {
+        if (position != synced) {
+            if (synced == null || position == null) {
+                pseudoValid = 0;
+            } else {
+                long changed = synced.changedSquares(position);
+                for (long valid = pseudoValid; changed != 0 && valid != 0; valid &= valid - 1) {
+                    int sq = Long.numberOfTrailingZeros(valid);
+                    if (((reach[sq] | 1L << sq) & changed) != 0) {
+                        pseudoValid &= ~(1L << sq);
+                    }
+                }
+            }
+            synced = position;
+            legalValid = 0;
+            king = UNKNOWN;
+        }
+        if (white != this.white) {
+            this.white = white;
+            legalValid = 0;
+            king = UNKNOWN;
+        }
+    }
+
+    private long computeLegal(Piece[][] board, int from) {
+        Piece p = board[from >> 3][from & 7];
+        if (p == null || p.isWhite() != white) {
+            return 0;
+        }
+        if ((pseudoValid >>> from & 1) == 0) {
+            computePseudo(board, from, p);
+            pseudoValid |= 1L << from;
+        }
+        long targets = pseudo[from];
+        char kind = Character.toUpperCase(p.symbol());
+        long special = 0; // castling and en passant: legal-layer only
+        int ep = synced.epSquare();
+        if (kind == 'P' && ep >= 0 && (ep == Geometry.NEIGHBOR[white ? Geometry.NE : Geometry.SE][from]
+                || ep == Geometry.NEIGHBOR[white ? Geometry.NW : Geometry.SW][from])) {
+            special |= 1L << ep;
+        }
+        int castling = synced.castlingRights();
+        if (kind == 'K' && castling != 0) {
+            for (int to = from - 2; to <= from + 2; to += 4) {
+                if (to >= 0 && to < 64 && Logic.canCastle(board, p, from, to, castling)) {
+                    special |= 1L << to;
+                }
+            }
+        }
+
+        if (king == UNKNOWN) {
+            king = Logic.findKing(board, white);
+            inCheck = king >= 0 && Logic.isAttacked(board, king, !white);
+        }
+        // A piece off every line through its king cannot expose it, unless
+        // the king is in check already or en passant removes a second pawn
+        long unsafe = kind != 'K' && !inCheck && (king < 0 || Geometry.DIRECTION[king * 64 + from] < 0)
+                ? special
+                : targets | special;
+        long result = (targets | special) & ~unsafe;
+        for (; unsafe != 0; unsafe &= unsafe - 1) {
+            int to = Long.numberOfTrailingZeros(unsafe);
+            if (!Logic.leavesOwnKingInCheck(board, p, from, to, king)) {
+                result |= 1L << to;
+            }
+        }
+        return result;
+    }
+
+    /** Fills the pseudo-legal targets of {@code p} on {@code from} and the squares they depend on. */
+    private void computePseudo(Piece[][] board, int from, Piece p) {
+        boolean own = p.isWhite();
+        long targets = 0, squares = 0;
+        char kind = Character.toUpperCase(p.symbol());
+        switch (kind) {
+            case 'R':
+            case 'B':
+            case 'Q':
+                for (int dir = (kind == 'B' ? Geometry.NE : Geometry.N); dir <= Geometry.NW; dir += (kind == 'Q' ? 1 : 2)) {
+                    for (int to : Geometry.RAYS[dir][from]) {
+                        Piece q = board[to >> 3][to & 7];
+                        squares |= 1L << to;
+                        if (q == null || q.isWhite() != own) {
+                            targets |= 1L << to;
+                        }
+                        if (q != null) {
+                            break;
+                        }
+                    }
+                }
+                break;
+            case 'N':
+                for (int to : Geometry.KNIGHT[from]) {
+                    Piece q = board[to >> 3][to & 7];
+                    if (q == null || q.isWhite() != own) {
+                        targets |= 1L << to;
+                    }
+                }
+                squares = Geometry.KNIGHT_MASK[from];
+                break;
+            case 'K':
+                for (int dir = Geometry.N; dir <= Geometry.NW; dir++) {
+                    int to = Geometry.NEIGHBOR[dir][from];
+                    if (to < 0) {
+                        continue;
+                    }
+                    Piece q = board[to >> 3][to & 7];
+                    if (q == null || q.isWhite() != own) {
+                        targets |= 1L << to;
+                    }
+                    squares |= 1L << to;
+                }
+                break;
+            case 'P': {
+                int fwd = own ? Geometry.N : Geometry.S;
+                int ahead = Geometry.NEIGHBOR[fwd][from];
+                if (ahead < 0) {
+                    break;
+                }
+                squares |= 1L << ahead;
+                if (board[ahead >> 3][ahead & 7] == null) {
+                    targets |= 1L << ahead;
+                }
+                int two = Geometry.NEIGHBOR[fwd][ahead];
+                if (two >= 0 && (from >> 3) == (own ? 6 : 1)) {
+                    squares |= 1L << two;
+                    if ((targets >>> ahead & 1) != 0 && board[two >> 3][two & 7] == null) {
+                        targets |= 1L << two;
+                    }
+                }
+                for (int side = 0; side < 2; side++) {
+                    int to = Geometry.NEIGHBOR[own ? (side == 0 ? Geometry.NW : Geometry.NE)
+                            : (side == 0 ? Geometry.SW : Geometry.SE)][from];
+                    if (to < 0) {
+                        continue;
+                    }
+                    squares |= 1L << to;
+                    Piece q = board[to >> 3][to & 7];
+                    if (q != null && q.isWhite() != own) {
+                        targets |= 1L << to;
+                    }
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        pseudo[from] = targets;
+        reach[from] = squares;
+    }
+}
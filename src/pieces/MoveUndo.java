@@ -0,0 +1,39 @@
+package pieces;
+
+/**
+ * What {@link Logic#makeMove} changed on the board, so that
+ * {@link Logic#unmakeMove} can restore it exactly. A search keeps one per
+ * ply and reuses it; nothing is allocated per move except the new piece of
+ * a promotion.
+ */
+public final class MoveUndo {
+
+    int move;
+    Piece mover;
+    Piece captured;
+    int capturedSquare;
+    Piece rook;
+    int rookFrom;
+    int rookTo;
+    Piece promoted;
+
+    /** @return the move as played, with a default promotion filled in */
+    public int move() {
+        return move;
+    }
+
+    /** @return the piece that moved (the pawn, for a promotion) */
+    public Piece mover() {
+        return mover;
+    }
+
+    /** @return the captured piece, or {@code null} */
+    public Piece captured() {
+        return captured;
+    }
+
+    /** @return the square the captured piece stood on (differs from the target for en passant) */
+    public int capturedSquare() {
+        return capturedSquare;
+    }
+}
@@ -27,6 +27,6 @@ public class Pawn extends Piece {
 
     @Override
     public char symbol() {
-        return "WHITE".equals(color) ? 'P' : 'p';
+        return white ? 'P' : 'p';
     }
 }
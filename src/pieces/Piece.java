@@ -13,10 +13,18 @@ public abstract class Piece {
 
     protected int[] coordinates;
     protected String color;
+    // Cached so the rules engine can compare sides without string compares
+    protected final boolean white;
 
     public Piece(int[] coordinates, String color) {
         this.coordinates = coordinates;
         this.color = color.toUpperCase();
+        this.white = "WHITE".equals(this.color);
+    }
+
+    /** Returns {@code true} for a WHITE piece. */
+    public boolean isWhite() {
+        return white;
     }
 
     /** Returns the color of this piece ("WHITE" or "BLACK"). */
@@ -47,4 +55,35 @@ public abstract class Piece {
 
     /** Each subclass must define its board symbol (e.g., 'K', 'R', 'P'). */
     public abstract char symbol();
+
+    /**
+     * Creates the piece for a board symbol (uppercase = WHITE, lowercase =
+     * BLACK), e.g. when restoring a saved position.
+     *
+     * @param symbol board symbol as returned by {@link #symbol()}
+     * @param row    row (0–7)
+     * @param col    column (0–7)
+     * @return the new piece
+     * @throws IllegalArgumentException if the symbol is not a supported piece
+     */
+    public static Piece create(char symbol, int row, int col) {
+        String color = Character.isUpperCase(symbol) ? "WHITE" : "BLACK";
+        int[] at = new int[] { row, col };
+        switch (Character.toUpperCase(symbol)) {
+            case 'K':
+                return new King(at, color);
+            case 'Q':
+                return new Queen(at, color);
+            case 'R':
+                return new Rook(at, color);
+            case 'B':
+                return new Bishop(at, color);
+            case 'N':
+                return new Knight(at, color);
+            case 'P':
+                return new Pawn(at, color);
+            default:
+                throw new IllegalArgumentException("Unsupported piece symbol: " + symbol);
+        }
+    }
 }
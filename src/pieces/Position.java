@@ -0,0 +1,182 @@
+package pieces;
+
+/**
+ * An immutable, compact copy of a position: the 64 squares packed four bits
+ * each into four {@code long}s, plus the side to move, castling rights,
+ * en-passant square, halfmove clock and Zobrist key.
+ *
+ * Unlike the live {@code Piece[][]} of a game, whose pieces are moved in
+ * place, a Position never changes, so it can be handed to other threads
+ * (spectators, background analysis) without copying or locking. A game
+ * derives the next Position from the previous one and the move's
+ * {@link MoveUndo} record by rewriting a few nibbles.
+ */
+public final class Position {
+
+    // Nibble codes: index in this string, +8 for BLACK. 0 means empty.
+    private static final String CODES = ".PNBRQK";
+
+    // Squares 0-15, 16-31, 32-47, 48-63; square sq is nibble sq & 15 of word sq >> 4
+    private final long w0, w1, w2, w3;
+    private final boolean whiteToMove;
+    private final byte castling;
+    private final byte ep;
+    private final short halfmoveClock;
+    private final long key;
+
+    private Position(long w0, long w1, long w2, long w3, boolean whiteToMove, int castling, int ep,
+            int halfmoveClock, long key) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+        this.whiteToMove = whiteToMove;
+        this.castling = (byte) castling;
+        this.ep = (byte) ep;
+        this.halfmoveClock = (short) Math.min(halfmoveClock, Short.MAX_VALUE);
+        this.key = key;
+    }
+
+    /**
+     * Packs a board.
+     *
+     * @param board         pieces by [row][col]
+     * @param whiteToMove   side to move
+     * @param castling      castling rights mask
+     * @param ep            en-passant target square, or {@link Logic#NO_EN_PASSANT}
+     * @param halfmoveClock plies since the last capture or pawn move
+     * @param key           Zobrist key of the position
+     * @return the snapshot
+     */
+    public static Position of(Piece[][] board, boolean whiteToMove, int castling, int ep, int halfmoveClock,
+            long key) {
+        long[] w = new long[4];
+        for (int sq = 0; sq < 64; sq++) {
+            w[sq >> 4] |= (long) code(board[sq >> 3][sq & 7]) << ((sq & 15) << 2);
+        }
+        return new Position(w[0], w[1], w[2], w[3], whiteToMove, castling, ep, halfmoveClock, key);
+    }
+
+    /**
+     * Derives the position after a move from this one, touching only the
+     * squares the move changed.
+     *
+     * @param undo          the record filled by {@link Logic#makeMove}
+     * @param castling      castling rights after the move
+     * @param ep            en-passant square after the move
+     * @param halfmoveClock halfmove clock after the move
+     * @param key           Zobrist key after the move
+     * @return the new snapshot; the side to move is flipped
+     */
+    public Position afterMove(MoveUndo undo, int castling, int ep, int halfmoveClock, long key) {
+        long[] w = { w0, w1, w2, w3 };
+        int from = Logic.from(undo.move), to = Logic.to(undo.move);
+        if (undo.captured != null) {
+            put(w, undo.capturedSquare, 0); // differs from 'to' for en passant
+        }
+        put(w, from, 0);
+        put(w, to, code(undo.promoted != null ? undo.promoted : undo.mover));
+        if (undo.rook != null) {
+            put(w, undo.rookFrom, 0);
+            put(w, undo.rookTo, code(undo.rook));
+        }
+        return new Position(w[0], w[1], w[2], w[3], !whiteToMove, castling, ep, halfmoveClock, key);
+    }
+
+    /**
+     * @param sq square index, {@code row * 8 + col}
+     * @return the piece symbol on the square ('K', 'p', ...), or '.' if empty
+     */
+    public char pieceAt(int sq) {
+        long word = sq < 32 ? (sq < 16 ? w0 : w1) : (sq < 48 ? w2 : w3);
+        int code = (int) (word >>> ((sq & 15) << 2)) & 15;
+        char symbol = CODES.charAt(code & 7);
+        return (code & 8) != 0 ? Character.toLowerCase(symbol) : symbol;
+    }
+
+    /**
+     * Squares whose contents differ between two positions, e.g. the squares
+     * a move emptied or filled (two for a normal move, three for en passant,
+     * four for castling).
+     *
+     * @param other another position
+     * @return a bit set of square indices
+     */
+    public long changedSquares(Position other) {
+        return changed(w0 ^ other.w0, 0) | changed(w1 ^ other.w1, 16) | changed(w2 ^ other.w2, 32)
+                | changed(w3 ^ other.w3, 48);
+    }
+
+    /** Maps each non-zero nibble of {@code diff} to the bit of its square. */
+    private static long changed(long diff, int firstSquare) {
+        long nibbles = (diff | diff >>> 1 | diff >>> 2 | diff >>> 3) & 0x1111111111111111L;
+        long squares = 0;
+        for (; nibbles != 0; nibbles &= nibbles - 1) {
+            squares |= 1L << (firstSquare + (Long.numberOfTrailingZeros(nibbles) >> 2));
+        }
+        return squares;
+    }
+
+    /** @return a new, independent board holding this position's pieces */
+    public Piece[][] toBoard() {
+        Piece[][] board = new Piece[8][8];
+        for (int sq = 0; sq < 64; sq++) {
+            char symbol = pieceAt(sq);
+            if (symbol != '.') {
+                board[sq >> 3][sq & 7] = Piece.create(symbol, sq >> 3, sq & 7);
+            }
+        }
+        return board;
+    }
+
+    /** @return {@code true} if WHITE is to move */
+    public boolean whiteToMove() {
+        return whiteToMove;
+    }
+
+    /** @return castling rights mask ({@link Logic#WHITE_KINGSIDE} ...) */
+    public int castlingRights() {
+        return castling;
+    }
+
+    /** @return en-passant target square, or {@link Logic#NO_EN_PASSANT} */
+    public int epSquare() {
+        return ep;
+    }
+
+    /** @return plies since the last capture or pawn move */
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /** @return Zobrist key, as {@code ChessGame.getPositionKey()} */
+    public long key() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Position p && w0 == p.w0 && w1 == p.w1 && w2 == p.w2 && w3 == p.w3
+                && whiteToMove == p.whiteToMove && castling == p.castling && ep == p.ep
+                && halfmoveClock == p.halfmoveClock;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key);
+    }
+
+    private static int code(Piece p) {
+        if (p == null) {
+            return 0;
+        }
+        char symbol = p.symbol();
+        int code = CODES.indexOf(Character.toUpperCase(symbol));
+        return Character.isUpperCase(symbol) ? code : code | 8;
+    }
+
+    private static void put(long[] w, int sq, int code) {
+        int shift = (sq & 15) << 2;
+        w[sq >> 4] = w[sq >> 4] & ~(15L << shift) | (long) code << shift;
+    }
+}
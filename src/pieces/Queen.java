@@ -0,0 +1,18 @@
+package pieces;
+
+public class Queen extends Piece {
+
+	/*
+	 * A queen moves any distance along a rank, file or diagonal.
+	 * The movement rules live in Logic, like those of the other pieces.
+	 */
+	public Queen(int[] coordinates, String color) {
+		super(coordinates, color);
+	}
+
+	@Override
+	public char symbol() {
+		// White queen = 'Q', black queen = 'q'
+		return white ? 'Q' : 'q';
+	}
+}
@@ -23,7 +23,7 @@ public class Rook extends Piece {
 	@Override
 	public char symbol() {
 		// White rook = 'R', black rook = 'r'
-		return "WHITE".equalsIgnoreCase(color) ? 'R' : 'r';
+		return white ? 'R' : 'r';
 	}
 
 }
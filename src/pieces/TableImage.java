@@ -0,0 +1,122 @@
+package pieces;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The precomputed lookup tables of {@link Geometry} and {@link Zobrist} as one
+ * binary file, so that a fresh JVM can copy them in with a single read
+ * instead of computing them.
+ *
+ * The image is written at build time by {@link #main} and used when the JVM
+ * is started with {@code -Dchess.tables=<file>}. Without the property, or if
+ * the file cannot be read or has another layout, the classes compute their
+ * tables as before; the contents are the same either way.
+ *
+ * The file is read with a plain stream rather than mapped or looked up as
+ * a class-path resource: both of those load more JDK classes at startup
+ * than computing these few kilobytes of tables costs.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   0      header     magic "CHTB", version, tile count, table size
+ *   16     DIRECTION  SQUARES * SQUARES bytes, [from * 64 + to]
+ *   4112   DISTANCE   SQUARES * SQUARES bytes, [from * 64 + to]
+ *   8208   NEIGHBOR   8 * SQUARES bytes, [dir][square]
+ *   8720   KNIGHT     SQUARES longs, knight jumps as bit sets
+ *   9232   ZOBRIST    Zobrist.KEY_COUNT longs
+ * </pre>
+ *
+ * Usage: {@code java -cp bin pieces.TableImage [file=bin/tables.bin]}
+ */
+public final class TableImage {
+
+    /** System property naming the image file. */
+    public static final String PROPERTY = "chess.tables";
+    private static final int MAGIC = 0x42544843; // "CHTB"
+    private static final int VERSION = 1;
+
+    static final int DIRECTION = 16;
+    static final int DISTANCE = DIRECTION + Geometry.SQUARES * Geometry.SQUARES;
+    static final int NEIGHBOR = DISTANCE + Geometry.SQUARES * Geometry.SQUARES;
+    static final int KNIGHT = NEIGHBOR + 8 * Geometry.SQUARES;
+    static final int ZOBRIST = KNIGHT + 8 * Geometry.SQUARES;
+    private static final int SIZE = ZOBRIST + 8 * Zobrist.KEY_COUNT;
+
+    private static ByteBuffer image;
+    private static boolean opened;
+
+    private TableImage() {
+    }
+
+    /**
+     * Returns the table image, reading the file on first use. Called from the
+     * static initializers of the classes whose tables it holds.
+     *
+     * @return a little-endian view of the image (the caller reads it with
+     *         absolute gets), or {@code null} if the tables must be computed
+     */
+    static synchronized ByteBuffer open() {
+        if (!opened) {
+            opened = true;
+            String file = System.getProperty(PROPERTY);
+            image = file == null ? null : read(file);
+        }
+        return image == null ? null : image.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer read(String file) {
+        ByteBuffer buf;
+        try (FileInputStream in = new FileInputStream(file)) {
+            buf = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            System.err.println("[TABLES] Cannot read " + file + ": " + e.getMessage() + "; computing tables.");
+            return null;
+        }
+        if (buf.capacity() != SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION
+                || buf.getInt(8) != Geometry.SQUARES || buf.getInt(12) != SIZE) {
+            System.err.println("[TABLES] " + file + " is from another version; computing tables.");
+            return null;
+        }
+        return buf;
+    }
+
+    /**
+     * Computes the tables and writes the image.
+     *
+     * @param args optional output file, default {@code bin/tables.bin}
+     */
+    public static void main(String[] args) throws IOException {
+        // Build from computed tables, never from a previous image
+        System.clearProperty(PROPERTY);
+        Path file = Path.of(args.length > 0 ? args[0] : "bin/tables.bin");
+
+        ByteBuffer buf = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, Geometry.SQUARES).putInt(12, SIZE);
+        buf.put(DIRECTION, Geometry.DIRECTION);
+        buf.put(DISTANCE, Geometry.DISTANCE);
+        for (int d = 0; d < 8; d++) {
+            for (int sq = 0; sq < Geometry.SQUARES; sq++) {
+                buf.put(NEIGHBOR + d * Geometry.SQUARES + sq, (byte) Geometry.NEIGHBOR[d][sq]);
+            }
+        }
+        for (int sq = 0; sq < Geometry.SQUARES; sq++) {
+            buf.putLong(KNIGHT + 8 * sq, Geometry.KNIGHT_MASK[sq]);
+        }
+        long[] keys = Zobrist.keys();
+        for (int i = 0; i < keys.length; i++) {
+            buf.putLong(ZOBRIST + 8 * i, keys[i]);
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Files.write(file, buf.array());
+        System.out.println("Wrote " + SIZE + " bytes of tables to " + file);
+    }
+}
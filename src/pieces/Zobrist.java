@@ -0,0 +1,164 @@
+package pieces;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zobrist hashing of positions: every (piece, square) pair, castling-rights
+ * mask, en-passant file and the side to move has a random 64-bit key, and a
+ * position's key is the XOR of the keys of its features. A move changes
+ * only a few features, so {@link #afterMove} updates a key in a handful of
+ * XORs instead of rehashing the board.
+ *
+ * The keys come from a fixed seed, so they are the same in every run and
+ * can be stored (e.g. in snapshots). They are also stored in the
+ * build-time {@link TableImage}, which is loaded instead of generating them
+ * when present.
+ */
+public final class Zobrist {
+
+    private static final String KINDS = "PNBRQK";
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /** Keys by [piece index * 64 + square]; piece index = kind, +6 for BLACK. */
+    static final long[] PIECE_SQUARE = new long[12 * 64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EP_FILE = new long[8];
+    /** XORed in when BLACK is to move. */
+    static final long BLACK_TO_MOVE;
+    /** Number of keys, in the order of {@link #keys()}. */
+    public static final int KEY_COUNT = 12 * 64 + 16 + 8 + 1;
+
+    static {
+        ByteBuffer image = TableImage.open();
+        if (image != null) {
+            long[] keys = new long[KEY_COUNT];
+            image.asLongBuffer().get(TableImage.ZOBRIST / 8, keys);
+            BLACK_TO_MOVE = unpack(keys);
+        } else {
+            BLACK_TO_MOVE = generate();
+        }
+    }
+
+    /** Fills the tables from the seed and returns the side-to-move key. */
+    private static long generate() {
+        long state = 0x5EEDC0DE2025L;
+        for (int i = 0; i < PIECE_SQUARE.length; i++) {
+            PIECE_SQUARE[i] = mix(state += GOLDEN);
+        }
+        for (int i = 1; i < CASTLING.length; i++) {
+            CASTLING[i] = mix(state += GOLDEN);
+        }
+        for (int i = 0; i < EP_FILE.length; i++) {
+            EP_FILE[i] = mix(state += GOLDEN);
+        }
+        return mix(state + GOLDEN);
+    }
+
+    /** Fills the tables from {@link #keys()} order and returns the side-to-move key. */
+    private static long unpack(long[] keys) {
+        System.arraycopy(keys, 0, PIECE_SQUARE, 0, PIECE_SQUARE.length);
+        System.arraycopy(keys, PIECE_SQUARE.length, CASTLING, 0, CASTLING.length);
+        System.arraycopy(keys, PIECE_SQUARE.length + CASTLING.length, EP_FILE, 0, EP_FILE.length);
+        return keys[KEY_COUNT - 1];
+    }
+
+    /**
+     * Returns a copy of all keys: piece-square, castling, en-passant file,
+     * then side to move. Used to write the {@link TableImage}.
+     */
+    public static long[] keys() {
+        long[] keys = new long[KEY_COUNT];
+        System.arraycopy(PIECE_SQUARE, 0, keys, 0, PIECE_SQUARE.length);
+        System.arraycopy(CASTLING, 0, keys, PIECE_SQUARE.length, CASTLING.length);
+        System.arraycopy(EP_FILE, 0, keys, PIECE_SQUARE.length + CASTLING.length, EP_FILE.length);
+        keys[KEY_COUNT - 1] = BLACK_TO_MOVE;
+        return keys;
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Hashes a position from scratch. The en-passant square is not part of
+     * this key; add {@link #epKey} for the side to move.
+     *
+     * @param board         pieces by [row][col]
+     * @param whiteToMove   side to move
+     * @param castling      castling rights mask
+     * @return the key
+     */
+    public static long key(Piece[][] board, boolean whiteToMove, int castling) {
+        long key = CASTLING[castling] ^ (whiteToMove ? 0 : BLACK_TO_MOVE);
+        for (int sq = 0; sq < 64; sq++) {
+            Piece p = board[sq >> 3][sq & 7];
+            if (p != null) {
+                key ^= pieceKey(p, sq);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Updates a key (as returned by {@link #key}) for a move just made with
+     * {@link Logic#makeMove}. The side to move flips.
+     *
+     * @param key            key before the move
+     * @param undo           the record filled by makeMove
+     * @param castlingBefore rights before the move
+     * @param castlingAfter  rights after the move
+     * @return key after the move
+     */
+    public static long afterMove(long key, MoveUndo undo, int castlingBefore, int castlingAfter) {
+        int from = Logic.from(undo.move), to = Logic.to(undo.move);
+        key ^= pieceKey(undo.mover, from);
+        key ^= pieceKey(undo.promoted != null ? undo.promoted : undo.mover, to);
+        if (undo.captured != null) {
+            key ^= pieceKey(undo.captured, undo.capturedSquare);
+        }
+        if (undo.rook != null) {
+            key ^= pieceKey(undo.rook, undo.rookFrom) ^ pieceKey(undo.rook, undo.rookTo);
+        }
+        return key ^ CASTLING[castlingBefore] ^ CASTLING[castlingAfter] ^ BLACK_TO_MOVE;
+    }
+
+    /**
+     * Key of an en-passant square, counted only when a pawn of the side to
+     * move could actually capture onto it; otherwise the position is the
+     * same as without it (as the repetition rule requires).
+     *
+     * @param board       pieces by [row][col]
+     * @param ep          en-passant target square, or {@link Logic#NO_EN_PASSANT}
+     * @param whiteToMove side to move
+     * @return the key, or 0
+     */
+    public static long epKey(Piece[][] board, int ep, boolean whiteToMove) {
+        if (ep == Logic.NO_EN_PASSANT) {
+            return 0;
+        }
+        // A capturing pawn stands diagonally behind the target, seen from its side
+        int left = Geometry.NEIGHBOR[whiteToMove ? Geometry.SW : Geometry.NW][ep];
+        int right = Geometry.NEIGHBOR[whiteToMove ? Geometry.SE : Geometry.NE][ep];
+        return isPawn(board, left, whiteToMove) || isPawn(board, right, whiteToMove) ? EP_FILE[ep & 7] : 0;
+    }
+
+    /** @return {@code true} if {@code sq} is on the board and holds a pawn of the given side */
+    private static boolean isPawn(Piece[][] board, int sq, boolean white) {
+        if (sq < 0) {
+            return false;
+        }
+        Piece p = board[sq >> 3][sq & 7];
+        return p != null && p.isWhite() == white && p.symbol() == (white ? 'P' : 'p');
+    }
+
+    private static long pieceKey(Piece p, int sq) {
+        int kind = KINDS.indexOf(Character.toUpperCase(p.symbol()));
+        return PIECE_SQUARE[(p.isWhite() ? kind : kind + 6) * 64 + sq];
+    }
+
+    /** SplitMix64 output function. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -20,33 +20,30 @@ public class CheckState extends State {
         return "[CHECK] " + (game.isWhiteToMove() ? "WHITE" : "BLACK") + " must respond > ";
     }
 
-    @Override
-    public void handleCommand(String line) {
-        var cmd = line.trim().toLowerCase();
-        switch (cmd) {
-            case "show" -> game.printBoard();
-            case "help" -> System.out.println("Commands: move <...> | checkmate | resign | show | reset | help");
-            case "resign" -> {
-                System.out.println((game.isWhiteToMove() ? "WHITE" : "BLACK") + " resigns while in check.");
-                game.setState(new GameOverState(game, cmd));
-            }
-            case "checkmate" -> {
+    /** Command handlers while in check, built once at class load. */
+    private static final CommandTable<CheckState> COMMANDS = new CommandTable<CheckState>(
+            (s, cmd) -> System.out.println("In CHECK: move to resolve, 'checkmate' to end, or 'resign'."))
+            .on(Command.Type.SHOW, State::show)
+            .on(Command.Type.STATS, State::printStats)
+            .on(Command.Type.HELP,
+                    (s, cmd) -> System.out.println("Commands: move <...> | checkmate | resign | show [unicode|fen]"
+                            + " | analyze [depth] [lines] | stop | stats | reset | help"))
+            .on(Command.Type.ANALYZE, State::analyze)
+            .on(Command.Type.STOP, State::stopAnalysis)
+            .on(Command.Type.RESIGN, (s, cmd) -> {
+                System.out.println((s.game.isWhiteToMove() ? "WHITE" : "BLACK") + " resigns while in check.");
+                s.game.setState(new GameOverState(s.game, cmd.keyword()));
+            })
+            .on(Command.Type.CHECKMATE, (s, cmd) -> {
                 System.out.println("CHECKMATE declared.");
-                game.setState(new CheckmateState(game, cmd));
-            }
-            case "reset" -> game.setState(new GameStartState(game));
-            default -> {
-                if (cmd.startsWith("move ")) {
-                    // Accept any move string to demo; real legality not required
-                    if (game.tryMove(cmd.substring(5))) {
-                        System.out.println("Check resolved (for demo).");
-                        game.setState(new NormalPlayState(game));
-                        game.toggleTurn();
-                    }
-                } else {
-                    System.out.println("In CHECK: move to resolve, 'checkmate' to end, or 'resign'.");
-                }
-            }
-        }
+                // The side to move is the one in check, so the opponent wins
+                s.game.setState(new CheckmateState(s.game, s.game.isWhiteToMove() ? "BLACK" : "WHITE"));
+            })
+            .on(Command.Type.RESET, (s, cmd) -> s.game.setState(new GameStartState(s.game)))
+            .on(Command.Type.MOVE, State::playMove);
+
+    @Override
+    public void handleCommand(Command cmd) {
+        COMMANDS.dispatch(this, cmd);
     }
-}
\ No newline at end of file
+}
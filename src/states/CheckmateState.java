@@ -38,13 +38,13 @@ public class CheckmateState extends State {
     }
 
     /**
-     * @param line raw input line
+     * @param cmd parsed command
      * @return none
      *
      *         we should skip this, because it goes to game over
      */
     @Override
-    public void handleCommand(String line) {
+    public void handleCommand(Command cmd) {
         System.out.println("Here we should go game over state");
     }
 
@@ -0,0 +1,194 @@
+package states;
+
+import pieces.Logic;
+
+/**
+ * A terminal command parsed once from a raw input line.
+ *
+ * The keyword is matched case-insensitively against a fixed table without
+ * lower-casing or splitting the line, and the two squares of a
+ * {@code move xx xx [q|r|b|n]} command are decoded straight from the line's
+ * characters into square indices ({@code row * 8 + col}, row 0 = rank 8,
+ * col 0 = 'a') plus an optional promotion piece.
+ * States then dispatch on {@link #type()} instead of re-comparing strings.
+ *
+ * @since 1.1
+ */
+public final class Command {
+
+    /** Every command the play states understand. */
+    public enum Type {
+        MOVE, CHECK, CHECKMATE, RESIGN, HELP, SHOW, RESET, STATS, ANALYZE, STOP, QUIT, UNKNOWN
+    }
+
+    /** Keyword table; "exit" is an alias for "quit". */
+    private static final String[] KEYWORDS = {
+            "move", "check", "checkmate", "resign", "help", "show", "reset", "stats", "analyze", "stop", "quit",
+            "exit"
+    };
+    private static final Type[] KEYWORD_TYPES = {
+            Type.MOVE, Type.CHECK, Type.CHECKMATE, Type.RESIGN, Type.HELP, Type.SHOW, Type.RESET,
+            Type.STATS, Type.ANALYZE, Type.STOP, Type.QUIT, Type.QUIT
+    };
+
+    private final Type type;
+    private final String line;
+    private final int argStart;
+    private final int from;
+    private final int to;
+    private final int promotion;
+
+    private Command(Type type, String line, int argStart, int from, int to, int promotion) {
+        this.type = type;
+        this.line = line;
+        this.argStart = argStart;
+        this.from = from;
+        this.to = to;
+        this.promotion = promotion;
+    }
+
+    /**
+     * Parses a raw input line.
+     *
+     * @param line raw command line from user
+     * @return the parsed command; never {@code null}
+     */
+    public static Command parse(String line) {
+        int end = line.length();
+        int start = skipSpaces(line, 0, end);
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        int kwEnd = start;
+        while (kwEnd < end && !Character.isWhitespace(line.charAt(kwEnd))) {
+            kwEnd++;
+        }
+        int argStart = skipSpaces(line, kwEnd, end);
+
+        Type type = Type.UNKNOWN;
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            String kw = KEYWORDS[i];
+            if (kw.length() == kwEnd - start && line.regionMatches(true, start, kw, 0, kw.length())) {
+                type = KEYWORD_TYPES[i];
+                break;
+            }
+        }
+
+        int from = -1;
+        int to = -1;
+        int promotion = Logic.PROMO_NONE;
+        if (type == Type.MOVE) {
+            // "move e2 e4": two two-character squares separated by whitespace,
+            // then optionally a promotion piece ("move e7 e8 q" or "e8=q")
+            if (argStart + 2 <= end) {
+                int second = skipSpaces(line, argStart + 2, end);
+                if (second > argStart + 2 && second + 2 <= end) {
+                    from = square(line, argStart);
+                    to = square(line, second);
+                    int rest = skipSpaces(line, second + 2, end);
+                    if (rest < end && line.charAt(rest) == '=') {
+                        rest++;
+                    }
+                    if (rest == end - 1) {
+                        promotion = Logic.promotionCode(line.charAt(rest));
+                    } else if (rest != end) {
+                        promotion = -1;
+                    }
+                }
+            }
+            if (from < 0 || to < 0 || promotion < 0) {
+                from = -1;
+                to = -1;
+                promotion = Logic.PROMO_NONE;
+            }
+        }
+        return new Command(type, line, argStart, from, to, promotion);
+    }
+
+    /**
+     * Builds a move command directly from square indices, e.g. for replays.
+     *
+     * @param from origin square index
+     * @param to   destination square index
+     * @return a MOVE command
+     */
+    public static Command move(int from, int to) {
+        return move(from, to, Logic.PROMO_NONE);
+    }
+
+    /**
+     * Builds a move command directly from square indices and a promotion.
+     *
+     * @param from      origin square index
+     * @param to        destination square index
+     * @param promotion one of the {@code Logic.PROMO_*} codes
+     * @return a MOVE command
+     */
+    public static Command move(int from, int to, int promotion) {
+        String text = "move " + squareName(from) + " " + squareName(to)
+                + (promotion == Logic.PROMO_NONE ? "" : " " + "?nbrq".charAt(promotion));
+        return new Command(Type.MOVE, text, 5, from, to, promotion);
+    }
+
+    /** @return the command type */
+    public Type type() {
+        return type;
+    }
+
+    /** @return {@code true} if this is a MOVE whose squares parsed correctly */
+    public boolean hasSquares() {
+        return from >= 0;
+    }
+
+    /** @return origin square index, or -1 if the move was malformed */
+    public int from() {
+        return from;
+    }
+
+    /** @return destination square index, or -1 if the move was malformed */
+    public int to() {
+        return to;
+    }
+
+    /** @return promotion code ({@code Logic.PROMO_*}) of a MOVE, PROMO_NONE if not given */
+    public int promotion() {
+        return promotion;
+    }
+
+    /** @return the (trimmed) text after the keyword, possibly empty */
+    public String arg() {
+        return line.substring(argStart).trim();
+    }
+
+    /** @return the keyword as typed, lower-cased (used as an end reason) */
+    public String keyword() {
+        return type == Type.UNKNOWN ? line.trim().toLowerCase() : type.name().toLowerCase();
+    }
+
+    @Override
+    public String toString() {
+        return line.trim();
+    }
+
+    /** Square index -> "e2"; the inverse of the move parser. */
+    public static String squareName(int square) {
+        int row = square >> 3, col = square & 7;
+        return "" + (char) ('a' + col) + (char) ('8' - row);
+    }
+
+    private static int square(String s, int i) {
+        int file = Character.toLowerCase(s.charAt(i)) - 'a';
+        int rank = s.charAt(i + 1) - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            return -1;
+        }
+        return (7 - rank) * 8 + file;
+    }
+
+    private static int skipSpaces(String s, int i, int end) {
+        while (i < end && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,42 @@
+package states;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Per-state dispatch table from {@link Command.Type} to a handler.
+ * Each concrete state builds one as a static constant, so the table is
+ * created once at class load and dispatch is a single array lookup.
+ *
+ * @param <S> the concrete state type the handlers operate on
+ * @since 1.1
+ */
+final class CommandTable<S extends State> {
+
+    private final BiConsumer<S, Command>[] handlers;
+
+    /**
+     * @param fallback handler for every command type not registered via
+     *                 {@link #on}
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    CommandTable(BiConsumer<S, Command> fallback) {
+        handlers = new BiConsumer[Command.Type.values().length];
+        Arrays.fill(handlers, fallback);
+    }
+
+    /**
+     * Registers the handler for one command type.
+     *
+     * @return this table, for chaining
+     */
+    CommandTable<S> on(Command.Type type, BiConsumer<S, Command> handler) {
+        handlers[type.ordinal()] = handler;
+        return this;
+    }
+
+    /** Runs the handler registered for {@code cmd.type()}. */
+    void dispatch(S state, Command cmd) {
+        handlers[cmd.type().ordinal()].accept(state, cmd);
+    }
+}
@@ -6,7 +6,7 @@ import main.ChessGame;
  * @author Qingyuan Wan
  * @version 11/05/2025
  *
- *          state after the game has ended (checkmate, resign).
+ *          state after the game has ended (checkmate, resign, draw).
  *          commands: show | help | reset | quit.
  */
 public class GameOverState extends State {
@@ -25,40 +25,51 @@ public class GameOverState extends State {
         this.reason = reason;
     }
 
+    /**
+     * @return end reason text
+     */
+    public String getReason() {
+        return reason;
+    }
+
     /**
      * @return none
-     *         Prints final message and available commands.
+     *         Stops a running analysis, then prints final message and
+     *         available commands.
      */
     @Override
     public void enter() {
+        if (game.stopAnalysis()) {
+            System.out.println("[ANALYSIS] stopping.");
+        }
         System.out.println("[END] Game over: " + reason);
         System.out.println("      Commands: show | help | reset | quit");
     }
 
+    /** Command handlers after the game has ended, built once at class load. */
+    private static final CommandTable<GameOverState> COMMANDS = new CommandTable<GameOverState>(
+            (s, cmd) -> System.out.println("[END] Invalid. Try: show | help | reset | quit"))
+            .on(Command.Type.SHOW, State::show)
+            .on(Command.Type.STATS, State::printStats)
+            .on(Command.Type.HELP, (s, cmd) -> System.out.println("""
+                    Commands (game over):
+                      show  - print final board (show unicode | show fen)
+                      stats - print engine and game metrics
+                      reset - start a new game
+                      quit  - exit
+                    """))
+            .on(Command.Type.RESET, (s, cmd) -> s.game.setState(new GameStartState(s.game)))
+            .on(Command.Type.QUIT, (s, cmd) -> System.out.println("Bye."));
+
     /**
-     * @param line raw input line from terminal
+     * @param cmd parsed command from terminal
      * @return none
      *
      *
      *         terminal commands
      */
     @Override
-    public void handleCommand(String line) {
-        var cmd = line.trim().toLowerCase();
-
-        switch (cmd) {
-            case "show" -> game.printBoard();
-            case "help" -> System.out.println("""
-                    Commands (game over):
-                      show  - print final board
-                      reset - start a new game
-                      quit  - exit
-                    """);
-            case "reset" -> {
-                game.setState(new GameStartState(game));
-            }
-            case "quit" -> System.out.println("Bye.");
-            default -> System.out.println("[END] Invalid. Try: show | help | reset | quit");
-        }
+    public void handleCommand(Command cmd) {
+        COMMANDS.dispatch(this, cmd);
     }
 }
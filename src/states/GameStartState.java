@@ -22,7 +22,7 @@ public class GameStartState extends State {
     }
 
     @Override
-    public void handleCommand(String line) {
+    public void handleCommand(Command cmd) {
         // Usually we auto-transition on enter(); ignore commands here.
         System.out.println("Starting... transitioning to NormalPlay.");
     }
@@ -1,7 +1,7 @@
 package states;
 
 import main.ChessGame;
-import pieces.Logic;
+
 /**
  * @author Qingyuan Wan
  * @version 11/05/2025
@@ -30,46 +30,36 @@ public class NormalPlayBlackState extends State {
         return "[Play] BLACK to move > ";
     }
 
+    /** Command handlers for BLACK's turn, built once at class load. */
+    private static final CommandTable<NormalPlayBlackState> COMMANDS = new CommandTable<NormalPlayBlackState>(
+            (s, cmd) -> System.out.println("Unknown command. Type 'help'."))
+            .on(Command.Type.MOVE, State::playMove)
+            .on(Command.Type.CHECK, (s, cmd) -> {
+                System.out.println("BLACK king placed in CHECK.");
+                s.game.setState(new CheckState(s.game));
+            })
+            .on(Command.Type.RESIGN, (s, cmd) -> {
+                System.out.println("BLACK resigns.");
+                s.game.setState(new GameOverState(s.game, cmd.keyword()));
+            })
+            .on(Command.Type.HELP,
+                    (s, cmd) -> System.out.println("Commands: move xx xx [q|r|b|n] | check | resign"
+                            + " | show [unicode|fen] | analyze [depth] [lines] | stop | stats | reset | help"))
+            .on(Command.Type.SHOW, State::show)
+            .on(Command.Type.ANALYZE, State::analyze)
+            .on(Command.Type.STOP, State::stopAnalysis)
+            .on(Command.Type.STATS, State::printStats)
+            .on(Command.Type.RESET, (s, cmd) -> s.game.setState(new GameStartState(s.game)));
+
     /**
      *
-     * @param line raw input line from terminal
+     * @param cmd parsed command from terminal
      * @return none
      *
      *         Handle terminal commands for BLACK's turn.
      */
     @Override
-    public void handleCommand(String line) {
-        var cmd = line.trim().toLowerCase();
-
-        if (cmd.startsWith("move ")) {
-            // tryMove consumes the terminal input after "move " via substring(5)
-            if (game.tryMove(cmd.substring(5))) {
-                // Toggle to opponent and decide next state based on check/checkmate
-                game.toggleTurn();
-                String toMove = game.isWhiteToMove() ? "WHITE" : "BLACK";
-                if (Logic.isCheckmated(game.getBoard(), toMove)) {
-                    String winner = game.isWhiteToMove() ? "BLACK" : "WHITE";
-                    game.setState(new CheckmateState(game, winner));
-                } else if (Logic.isInCheck(game.getBoard(), toMove)) {
-                    game.setState(new CheckState(game));
-                } else {
-                    game.setState(new NormalPlayWhiteState(game));
-                }
-            }
-        } else if (cmd.equals("check")) {
-            System.out.println("BLACK king placed in CHECK.");
-            game.setState(new CheckState(game));
-        } else if (cmd.equals("resign")) {
-            System.out.println("BLACK resigns.");
-            game.setState(new GameOverState(game, cmd));
-        } else if (cmd.equals("help")) {
-            System.out.println("Commands: move xx xx | check | resign | show | reset | help");
-        } else if (cmd.equals("show")) {
-            game.printBoard();
-        } else if (cmd.equals("reset")) {
-            game.setState(new GameStartState(game));
-        } else {
-            System.out.println("Unknown command. Type 'help'.");
-        }
+    public void handleCommand(Command cmd) {
+        COMMANDS.dispatch(this, cmd);
     }
 }
@@ -37,11 +37,11 @@ public class NormalPlayState extends State {
      * Normally unreachable because enter() forwards right away.
      * For safety, route again on any input.
      *
-     * @param line raw input line
+     * @param cmd parsed command
      * @return none
      */
     @Override
-    public void handleCommand(String line) {
+    public void handleCommand(Command cmd) {
         if (game.isWhiteToMove()) {
             game.setState(new NormalPlayWhiteState(game));
         } else {
@@ -1,7 +1,6 @@
 package states;
 
 import main.ChessGame;
-import pieces.Logic;
 
 /**
  * @author Qingyuan Wan
@@ -31,46 +30,36 @@ public class NormalPlayWhiteState extends State {
         return "[Play] WHITE to move > ";
     }
 
+    /** Command handlers for WHITE's turn, built once at class load. */
+    private static final CommandTable<NormalPlayWhiteState> COMMANDS = new CommandTable<NormalPlayWhiteState>(
+            (s, cmd) -> System.out.println("Unknown command. Type 'help'."))
+            .on(Command.Type.MOVE, State::playMove)
+            .on(Command.Type.CHECK, (s, cmd) -> {
+                System.out.println("WHITE king placed in CHECK.");
+                s.game.setState(new CheckState(s.game));
+            })
+            .on(Command.Type.RESIGN, (s, cmd) -> {
+                System.out.println("WHITE resigns.");
+                s.game.setState(new GameOverState(s.game, cmd.keyword()));
+            })
+            .on(Command.Type.HELP,
+                    (s, cmd) -> System.out.println("Commands: move xx xx [q|r|b|n] | check | resign"
+                            + " | show [unicode|fen] | analyze [depth] [lines] | stop | stats | reset | help"))
+            .on(Command.Type.SHOW, State::show)
+            .on(Command.Type.ANALYZE, State::analyze)
+            .on(Command.Type.STOP, State::stopAnalysis)
+            .on(Command.Type.STATS, State::printStats)
+            .on(Command.Type.RESET, (s, cmd) -> s.game.setState(new GameStartState(s.game)));
+
     /**
      *
-     * @param line raw input line from terminal
+     * @param cmd parsed command from terminal
      * @return none
      *
      *         Handle terminal commands for WHITE's turn.
      */
     @Override
-    public void handleCommand(String line) {
-        var cmd = line.trim().toLowerCase();
-
-        if (cmd.startsWith("move ")) {
-            // for move, take first 5 index
-            if (game.tryMove(cmd.substring(5))) {
-                // Toggle to opponent and decide next state based on check/checkmate
-                game.toggleTurn();
-                String toMove = game.isWhiteToMove() ? "WHITE" : "BLACK";
-                if (Logic.isCheckmated(game.getBoard(), toMove)) {
-                    String winner = game.isWhiteToMove() ? "BLACK" : "WHITE";
-                    game.setState(new CheckmateState(game, winner));
-                } else if (Logic.isInCheck(game.getBoard(), toMove)) {
-                    game.setState(new CheckState(game));
-                } else {
-                    game.setState(new NormalPlayBlackState(game));
-                }
-            }
-        } else if (cmd.equals("check")) {
-            System.out.println("WHITE king placed in CHECK.");
-            game.setState(new CheckState(game));
-        } else if (cmd.equals("resign")) {
-            System.out.println("WHITE resigns.");
-            game.setState(new GameOverState(game, cmd));
-        } else if (cmd.equals("help")) {
-            System.out.println("Commands: move xx xx | check | resign | show | reset | help");
-        } else if (cmd.equals("show")) {
-            game.printBoard();
-        } else if (cmd.equals("reset")) {
-            game.setState(new GameStartState(game));
-        } else {
-            System.out.println("Unknown command. Type 'help'.");
-        }
+    public void handleCommand(Command cmd) {
+        COMMANDS.dispatch(this, cmd);
     }
 }
@@ -1,9 +1,18 @@
 package states;
 
+import engine.Search;
+import main.BoardRenderer;
 import main.ChessGame;
+import metrics.Metrics;
+import pieces.Logic;
 
 public abstract class State {
 
+    /** Defaults of the {@code analyze} command: depth, lines and time budget. */
+    private static final int ANALYSIS_DEPTH = 5;
+    private static final int ANALYSIS_LINES = 3;
+    private static final long ANALYSIS_MILLIS = 30_000;
+
     /** The game context whose behavior is being varied by this State. */
     protected final ChessGame game;
 
@@ -43,10 +52,156 @@ public abstract class State {
     }
 
     /**
-     * Handle a single line command. Concrete states override this
-     * to implement state-specific behavior and transitions.
+     * Handle a single line command. The line is parsed once into a
+     * {@link Command} and passed to {@link #handleCommand(Command)}.
      *
      * @param line raw command line from user
      */
-    public abstract void handleCommand(String line);
+    public void handleCommand(String line) {
+        handleCommand(Command.parse(line));
+    }
+
+    /**
+     * Handle a parsed command. Concrete states override this
+     * to implement state-specific behavior and transitions.
+     *
+     * @param cmd parsed command
+     */
+    public abstract void handleCommand(Command cmd);
+
+    /**
+     * Prints the process-wide metrics (the {@code stats} command).
+     *
+     * @param cmd the STATS command
+     */
+    protected void printStats(Command cmd) {
+        System.out.print(Metrics.dumpText());
+    }
+
+    /**
+     * Prints the position (the {@code show [unicode|fen]} command): the ASCII
+     * board by default, the board with chess symbols, or a FEN string.
+     *
+     * @param cmd the SHOW command
+     */
+    protected void show(Command cmd) {
+        String format = cmd.arg().toLowerCase();
+        if (format.isEmpty()) {
+            game.printBoard(BoardRenderer.Format.ASCII);
+        } else if (format.equals("unicode")) {
+            game.printBoard(BoardRenderer.Format.UNICODE);
+        } else if (format.equals("fen")) {
+            game.printBoard(BoardRenderer.Format.FEN);
+        } else {
+            System.out.println("Usage: show [unicode|fen]");
+        }
+    }
+
+    /**
+     * Starts a background analysis of the current position (the
+     * {@code analyze [depth] [lines]} command). Results are printed as each
+     * depth completes while the command loop keeps running.
+     *
+     * @param cmd the ANALYZE command
+     */
+    protected void analyze(Command cmd) {
+        String[] args = cmd.arg().isEmpty() ? new String[0] : cmd.arg().split("\\s+");
+        int depth = ANALYSIS_DEPTH;
+        int lines = ANALYSIS_LINES;
+        try {
+            depth = args.length > 0 ? Integer.parseInt(args[0]) : depth;
+            lines = args.length > 1 ? Integer.parseInt(args[1]) : lines;
+        } catch (NumberFormatException e) {
+            depth = -1;
+        }
+        if (args.length > 2 || depth < 1 || lines < 1) {
+            System.out.println("Usage: analyze [depth] [lines]");
+            return;
+        }
+        boolean white = game.isWhiteToMove();
+        boolean started = game.startAnalysis(new Search.Limits(depth, lines, ANALYSIS_MILLIS),
+                info -> System.out.print(formatInfo(info, white)),
+                last -> System.out.println(last == null ? "[ANALYSIS] no result"
+                        : "[ANALYSIS] best move " + moveText(last.lines().get(0).moves()[0]) + " (depth "
+                                + last.depth() + ")"));
+        if (!started) {
+            System.out.println("[GAME LOG] Game not started. Use 'reset' command.");
+        } else {
+            System.out.println("[ANALYSIS] started to depth " + depth + "; type 'stop' to cancel.");
+        }
+    }
+
+    /**
+     * Stops the background analysis (the {@code stop} command).
+     *
+     * @param cmd the STOP command
+     */
+    protected void stopAnalysis(Command cmd) {
+        System.out.println(game.stopAnalysis() ? "[ANALYSIS] stopping." : "[ANALYSIS] Nothing to stop.");
+    }
+
+    /** One block per depth, built first so that it prints in one piece. */
+    private static String formatInfo(Search.Info info, boolean white) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[ANALYSIS] depth ").append(info.depth()).append("  nodes ").append(info.nodes())
+                .append("  nps ").append(info.nodesPerSecond()).append("  time ").append(info.millis())
+                .append("ms\n");
+        int rank = 1;
+        for (Search.Line line : info.lines()) {
+            // Scores are shown from WHITE's point of view
+            int score = white ? line.score() : -line.score();
+            sb.append("  ").append(rank++).append(". ");
+            if (Math.abs(line.score()) >= Search.MATE - 1000) {
+                int plies = Search.MATE - Math.abs(line.score());
+                sb.append(score > 0 ? "#" : "#-").append((plies + 1) / 2);
+            } else {
+                sb.append(String.format("%+.2f", score / 100.0));
+            }
+            for (int move : line.moves()) {
+                sb.append(' ').append(moveText(move));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Encoded move -> "e7e8q". */
+    private static String moveText(int move) {
+        int promotion = Logic.promotion(move);
+        return Command.squareName(Logic.from(move)) + Command.squareName(Logic.to(move))
+                + (promotion == Logic.PROMO_NONE ? "" : String.valueOf("?nbrq".charAt(promotion)));
+    }
+
+    /**
+     * Plays a MOVE command and, if it was legal, hands the turn to the
+     * opponent and picks the next state (checkmate, draw, check, or normal
+     * play).
+     *
+     * @param cmd a MOVE command
+     */
+    protected void playMove(Command cmd) {
+        if (!cmd.hasSquares()) {
+            System.out.println("[GAME LOG] Invalid move format. Use 'e2 e4'.");
+            return;
+        }
+        if (!game.tryMove(cmd.from(), cmd.to(), cmd.promotion())) {
+            return;
+        }
+        // Toggle to opponent and decide next state based on check/checkmate
+        game.toggleTurn();
+        String toMove = game.isWhiteToMove() ? "WHITE" : "BLACK";
+        String draw;
+        if (Logic.isCheckmated(game.getBoard(), toMove, game.getEpSquare())) {
+            String winner = game.isWhiteToMove() ? "BLACK" : "WHITE";
+            game.setState(new CheckmateState(game, winner));
+        } else if ((draw = game.drawReason()) != null) {
+            game.setState(new GameOverState(game, "draw by " + draw));
+        } else if (Logic.isInCheck(game.getBoard(), toMove)) {
+            game.setState(new CheckState(game));
+        } else if (game.isWhiteToMove()) {
+            game.setState(new NormalPlayWhiteState(game));
+        } else {
+            game.setState(new NormalPlayBlackState(game));
+        }
+    }
 }